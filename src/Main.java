@@ -59,11 +59,14 @@ public class Main {
         FiniteAutomaton finiteautomaton = grammar.toFiniteAutomaton();
         System.out.println("\n" + finiteautomaton.toString());
 
+        boolean[] generatedValid = finiteautomaton.areWordsValid(generatedStrings);
+        boolean[] generatedRandomValid = finiteautomaton.areWordsValid(generatedStringsRandom);
+
         System.out.println("\nTest cases: ");
         int counter = 1;
         for (int i = 0; i < n; i++) {
-            System.out.println("  " + counter + ". - " + generatedStrings[i] + ": " + finiteautomaton.isWordValid(generatedStrings[i]));
-            System.out.println("  " + ++counter + ". - " + generatedStringsRandom[i] + ": " + finiteautomaton.isWordValid(generatedStringsRandom[i]));
+            System.out.println("  " + counter + ". - " + generatedStrings[i] + ": " + generatedValid[i]);
+            System.out.println("  " + ++counter + ". - " + generatedStringsRandom[i] + ": " + generatedRandomValid[i]);
             counter++;
 
         }
@@ -0,0 +1,76 @@
+package automaton;
+
+import java.util.Arrays;
+
+// Maps characters to equivalence classes of symbols that no transition tells apart; class 0 is always dead
+final class AlphabetClasses {
+    private final String[] symbols;
+    private final int classCount;
+    private final byte[] narrow;
+    private final char[] wide;
+
+    AlphabetClasses(String[] symbols, int[] classOfSymbol, int classCount) {
+        this.symbols = symbols;
+        this.classCount = classCount;
+        int maxChar = -1;
+        for (String symbol : symbols) {
+            maxChar = Math.max(maxChar, symbol.charAt(0));
+        }
+        if (classCount <= 256) {
+            this.narrow = new byte[maxChar + 1];
+            this.wide = null;
+            for (int symbol = 0; symbol < symbols.length; symbol++) {
+                narrow[symbols[symbol].charAt(0)] = (byte) classOfSymbol[symbol];
+            }
+        } else {
+            this.narrow = null;
+            this.wide = new char[maxChar + 1];
+            for (int symbol = 0; symbol < symbols.length; symbol++) {
+                wide[symbols[symbol].charAt(0)] = (char) classOfSymbol[symbol];
+            }
+        }
+    }
+
+    // Every symbol in its own class, for callers that build tables symbol by symbol
+    static AlphabetClasses identity(String[] symbols) {
+        int[] classOfSymbol = new int[symbols.length];
+        for (int symbol = 0; symbol < symbols.length; symbol++) {
+            classOfSymbol[symbol] = symbol + 1;
+        }
+        return new AlphabetClasses(symbols, classOfSymbol, symbols.length + 1);
+    }
+
+    int classOf(char c) {
+        if (narrow != null) {
+            return c < narrow.length ? narrow[c] & 0xFF : 0;
+        }
+        return c < wide.length ? wide[c] : 0;
+    }
+
+    int getClassCount() {
+        return classCount;
+    }
+
+    String[] getSymbols() {
+        return symbols;
+    }
+
+    char[] membersOf(int classId) {
+        char[] members = new char[symbols.length];
+        int count = 0;
+        for (String symbol : symbols) {
+            if (classOf(symbol.charAt(0)) == classId) {
+                members[count++] = symbol.charAt(0);
+            }
+        }
+        return Arrays.copyOf(members, count);
+    }
+
+    boolean isNarrow() {
+        return narrow != null;
+    }
+
+    int getLookupLength() {
+        return narrow != null ? narrow.length : wide.length;
+    }
+}
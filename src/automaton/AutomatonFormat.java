@@ -0,0 +1,83 @@
+package automaton;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Layout (little-endian): header ints, accepting bitset longs, table ints, symbol chars, char-to-class map
+final class AutomatonFormat {
+    static final int MAGIC = 0x41464C46;
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = 8 * Integer.BYTES;
+
+    private AutomatonFormat() {
+    }
+
+    static void write(CompiledAutomaton automaton, Path path) throws IOException {
+        if (!automaton.isDeterministic()) {
+            throw new IllegalArgumentException("Only deterministic automata can be serialized");
+        }
+        int stateCount = automaton.getStateCount();
+        int classCount = automaton.getClassCount();
+        int[] table = automaton.getTable();
+        AlphabetClasses classes = automaton.getClasses();
+        String[] symbols = classes.getSymbols();
+        int lookupLength = classes.getLookupLength();
+        int lookupWidth = classes.isNarrow() ? Byte.BYTES : Character.BYTES;
+        int words = automaton.getWords();
+
+        long size = HEADER_BYTES + (long) words * Long.BYTES + (long) table.length * Integer.BYTES
+                + (long) symbols.length * Character.BYTES + (long) lookupLength * lookupWidth;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Automaton is too large for a single mapped file: " + size + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(stateCount).putInt(classCount)
+                .putInt(automaton.getInitialState()).putInt(symbols.length).putInt(lookupLength).putInt(lookupWidth);
+        for (int w = 0; w < words; w++) {
+            long bits = 0;
+            for (int bit = 0; bit < 64 && (w << 6) + bit < stateCount; bit++) {
+                if (automaton.isAccepting((w << 6) + bit)) {
+                    bits |= 1L << bit;
+                }
+            }
+            buffer.putLong(bits);
+        }
+        for (int target : table) {
+            buffer.putInt(target);
+        }
+        for (String symbol : symbols) {
+            buffer.putChar(symbol.charAt(0));
+        }
+        for (int c = 0; c < lookupLength; c++) {
+            if (lookupWidth == Byte.BYTES) {
+                buffer.put((byte) classes.classOf((char) c));
+            } else {
+                buffer.putChar((char) classes.classOf((char) c));
+            }
+        }
+        buffer.flip();
+
+        // Written next to the target and renamed over it, so a crash leaves either the old file or the new one
+        Path target = path.toAbsolutePath();
+        Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
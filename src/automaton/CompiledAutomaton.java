@@ -0,0 +1,675 @@
+package automaton;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class CompiledAutomaton implements Matcher {
+    static final int DEAD = -1;
+    static final String EPSILON = "e";
+    private static final int BATCH_CHUNK = 1 << 16;
+
+    private final String[] stateNames;
+    private final AlphabetClasses classes;
+    private final int classCount;
+    private final int initialState;
+    private final boolean[] accepting;
+
+    // CSR adjacency over (state, class); deterministic automata also get a dense table
+    private final int[] table;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] epsilonOffsets;
+    private final int[] epsilonTargets;
+
+    // Bitsets of `words` longs; nondeterministic automata also get their epsilon strongly connected components,
+    // whose members share one closure row
+    private final int words;
+    private final int[] components;
+    private final long[] closures;
+    private final long[] acceptingBits;
+    private final long[] liveBits;
+
+    // Nondeterministic automata of at most 64 states keep the whole active set in one long;
+    // successor masks per (state, class) already include the epsilon closure of every target
+    private final long[] smallSuccessors;
+    private final long smallInitial;
+
+    private CompiledAutomaton(String[] stateNames, AlphabetClasses classes, int initialState,
+                              boolean[] accepting, int[] table, int[] offsets, int[] targets,
+                              int[] epsilonOffsets, int[] epsilonTargets) {
+        this.stateNames = stateNames;
+        this.classes = classes;
+        this.classCount = classes.getClassCount();
+        this.initialState = initialState;
+        this.accepting = accepting;
+        this.table = table;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.epsilonOffsets = epsilonOffsets;
+        this.epsilonTargets = epsilonTargets;
+        this.words = (stateNames.length + 63) >>> 6;
+        this.components = table == null ? new int[stateNames.length] : null;
+        this.closures = table == null ? computeClosures() : null;
+        this.acceptingBits = new long[words];
+        for (int state = 0; state < accepting.length; state++) {
+            if (accepting[state]) {
+                acceptingBits[state >>> 6] |= 1L << state;
+            }
+        }
+        this.liveBits = computeLive();
+        if (table == null && stateNames.length <= Long.SIZE) {
+            this.smallSuccessors = computeSmallSuccessors();
+            this.smallInitial = closures[components[initialState]];
+        } else {
+            this.smallSuccessors = null;
+            this.smallInitial = 0;
+        }
+    }
+
+    static CompiledAutomaton compile(String[] states, String[] alphabet, Transition[] transitions,
+                                     String initialState, String[] finalStates) {
+        // Intern states, keeping the declared order and appending anything only used by transitions
+        Map<String, Integer> stateIds = new LinkedHashMap<>();
+        for (String state : states) {
+            stateIds.putIfAbsent(state, stateIds.size());
+        }
+        stateIds.putIfAbsent(initialState, stateIds.size());
+        for (Transition t : transitions) {
+            stateIds.putIfAbsent(t.getCurrentState(), stateIds.size());
+            stateIds.putIfAbsent(t.getNextState(), stateIds.size());
+        }
+
+        // Intern symbols; only one-character labels can ever match an input character
+        Map<String, Integer> symbolIds = new LinkedHashMap<>();
+        for (String symbol : alphabet) {
+            if (isSymbol(symbol)) {
+                symbolIds.putIfAbsent(symbol, symbolIds.size());
+            }
+        }
+        for (Transition t : transitions) {
+            if (isSymbol(t.getTransitionLabel())) {
+                symbolIds.putIfAbsent(t.getTransitionLabel(), symbolIds.size());
+            }
+        }
+
+        int stateCount = stateIds.size();
+        int symbolCount = symbolIds.size();
+        boolean[] accepting = new boolean[stateCount];
+        for (String finalState : finalStates) {
+            Integer id = stateIds.get(finalState);
+            if (id != null) {
+                accepting[id] = true;
+            }
+        }
+
+        // Count edges per slot first so both CSR arrays can be filled in one pass
+        int[] offsets = new int[stateCount * symbolCount + 1];
+        int[] epsilonOffsets = new int[stateCount + 1];
+        for (Transition t : transitions) {
+            int from = stateIds.get(t.getCurrentState());
+            if (Objects.equals(t.getTransitionLabel(), EPSILON)) {
+                epsilonOffsets[from + 1]++;
+            } else if (isSymbol(t.getTransitionLabel())) {
+                offsets[from * symbolCount + symbolIds.get(t.getTransitionLabel()) + 1]++;
+            }
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+        for (int i = 1; i < epsilonOffsets.length; i++) {
+            epsilonOffsets[i] += epsilonOffsets[i - 1];
+        }
+
+        int[] targets = new int[offsets[offsets.length - 1]];
+        int[] epsilonTargets = new int[epsilonOffsets[epsilonOffsets.length - 1]];
+        int[] fill = Arrays.copyOf(offsets, offsets.length - 1);
+        int[] epsilonFill = Arrays.copyOf(epsilonOffsets, epsilonOffsets.length - 1);
+        for (Transition t : transitions) {
+            int from = stateIds.get(t.getCurrentState());
+            int to = stateIds.get(t.getNextState());
+            if (Objects.equals(t.getTransitionLabel(), EPSILON)) {
+                epsilonTargets[epsilonFill[from]++] = to;
+            } else if (isSymbol(t.getTransitionLabel())) {
+                targets[fill[from * symbolCount + symbolIds.get(t.getTransitionLabel())]++] = to;
+            }
+        }
+
+        // Symbols whose sorted target lists agree in every state share a class
+        Map<IntBuffer, Integer> signatures = new HashMap<>();
+        int[] classOfSymbol = new int[symbolCount];
+        int[] representative = new int[symbolCount + 1];
+        int classCount = 1;
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            int[] signature = signatureOf(symbol, stateCount, symbolCount, offsets, targets);
+            if (signature.length == stateCount) {
+                continue;
+            }
+            Integer classId = signatures.putIfAbsent(IntBuffer.wrap(signature), classCount);
+            if (classId == null) {
+                classId = classCount;
+                representative[classCount++] = symbol;
+            }
+            classOfSymbol[symbol] = classId;
+        }
+
+        int[] classOffsets = new int[stateCount * classCount + 1];
+        int[] classTargets = new int[targets.length];
+        int size = 0;
+        for (int state = 0; state < stateCount; state++) {
+            classOffsets[state * classCount + 1] = size;
+            for (int classId = 1; classId < classCount; classId++) {
+                int slot = state * symbolCount + representative[classId];
+                for (int e = offsets[slot]; e < offsets[slot + 1]; e++) {
+                    classTargets[size++] = targets[e];
+                }
+                classOffsets[state * classCount + classId + 1] = size;
+            }
+        }
+
+        String[] stateNames = stateIds.keySet().toArray(new String[0]);
+        AlphabetClasses classes = new AlphabetClasses(symbolIds.keySet().toArray(new String[0]),
+                classOfSymbol, classCount);
+        int initial = stateIds.get(initialState);
+        classTargets = Arrays.copyOf(classTargets, size);
+
+        int[] table = epsilonTargets.length == 0 ? toTable(classOffsets, classTargets) : null;
+        return new CompiledAutomaton(stateNames, classes, initial, accepting, table,
+                classOffsets, classTargets, epsilonOffsets, epsilonTargets);
+    }
+
+    // Per state: the number of targets followed by the sorted targets
+    private static int[] signatureOf(int symbol, int stateCount, int symbolCount, int[] offsets, int[] targets) {
+        int length = stateCount;
+        for (int state = 0; state < stateCount; state++) {
+            int slot = state * symbolCount + symbol;
+            length += offsets[slot + 1] - offsets[slot];
+        }
+        int[] signature = new int[length];
+        int position = 0;
+        for (int state = 0; state < stateCount; state++) {
+            int slot = state * symbolCount + symbol;
+            int count = offsets[slot + 1] - offsets[slot];
+            signature[position++] = count;
+            System.arraycopy(targets, offsets[slot], signature, position, count);
+            Arrays.sort(signature, position, position + count);
+            position += count;
+        }
+        return signature;
+    }
+
+    static CompiledAutomaton fromTable(String[] stateNames, AlphabetClasses classes, int initialState,
+                                       boolean[] accepting, int[] table) {
+        int[] offsets = new int[table.length + 1];
+        for (int slot = 0; slot < table.length; slot++) {
+            offsets[slot + 1] = offsets[slot] + (table[slot] == DEAD ? 0 : 1);
+        }
+        int[] targets = new int[offsets[table.length]];
+        for (int slot = 0; slot < table.length; slot++) {
+            if (table[slot] != DEAD) {
+                targets[offsets[slot]] = table[slot];
+            }
+        }
+        return new CompiledAutomaton(stateNames, classes, initialState, accepting, table,
+                offsets, targets, new int[stateNames.length + 1], new int[0]);
+    }
+
+    private static boolean isSymbol(String label) {
+        return label != null && label.length() == 1 && !label.equals(EPSILON);
+    }
+
+    private static int[] toTable(int[] offsets, int[] targets) {
+        int[] table = new int[offsets.length - 1];
+        for (int slot = 0; slot < table.length; slot++) {
+            table[slot] = DEAD;
+            for (int i = offsets[slot]; i < offsets[slot + 1]; i++) {
+                if (table[slot] != DEAD && table[slot] != targets[i]) {
+                    return null;
+                }
+                table[slot] = targets[i];
+            }
+        }
+        return table;
+    }
+
+    public boolean isDeterministic() {
+        return table != null;
+    }
+
+    public int getStateCount() {
+        return stateNames.length;
+    }
+
+    public int getSymbolCount() {
+        return classes.getSymbols().length;
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    String getStateName(int state) {
+        return stateNames[state];
+    }
+
+    AlphabetClasses getClasses() {
+        return classes;
+    }
+
+    int getInitialState() {
+        return initialState;
+    }
+
+    boolean isAccepting(int state) {
+        return accepting[state];
+    }
+
+    int[] getTable() {
+        return table;
+    }
+
+    int getWords() {
+        return words;
+    }
+
+    void initialSet(long[] into) {
+        Arrays.fill(into, 0L);
+        orClosure(into, initialState);
+    }
+
+    // Writes the closed successor set of `from` on `classId` into `into`, returning false when it is empty
+    boolean step(long[] from, int classId, long[] into) {
+        Arrays.fill(into, 0L);
+        boolean any = false;
+        for (int w = 0; w < words; w++) {
+            long bits = from[w];
+            while (bits != 0) {
+                int slot = ((w << 6) + Long.numberOfTrailingZeros(bits)) * classCount + classId;
+                bits &= bits - 1;
+                for (int e = offsets[slot]; e < offsets[slot + 1]; e++) {
+                    orClosure(into, targets[e]);
+                    any = true;
+                }
+            }
+        }
+        return any;
+    }
+
+    boolean isAccepting(long[] set) {
+        for (int w = 0; w < words; w++) {
+            if ((set[w] & acceptingBits[w]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isLive(int state) {
+        return state != DEAD && (liveBits[state >>> 6] & (1L << state)) != 0;
+    }
+
+    boolean isLive(long[] set) {
+        for (int w = 0; w < words; w++) {
+            if ((set[w] & liveBits[w]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Drops states that can no longer reach an accepting state, so equivalent subsets share one key
+    void retainLive(long[] set) {
+        for (int w = 0; w < words; w++) {
+            set[w] &= liveBits[w];
+        }
+    }
+
+    static int nextMember(long[] set, int from) {
+        int w = from >>> 6;
+        if (w >= set.length) {
+            return -1;
+        }
+        long bits = set[w] & (-1L << from);
+        while (bits == 0) {
+            if (++w == set.length) {
+                return -1;
+            }
+            bits = set[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    public void writeTo(Path path) throws IOException {
+        AutomatonFormat.write(this, path);
+    }
+
+    public FiniteAutomaton toFiniteAutomaton() {
+        char[][] members = new char[classCount][];
+        for (int classId = 1; classId < classCount; classId++) {
+            members[classId] = classes.membersOf(classId);
+        }
+        List<Transition> transitions = new ArrayList<>();
+        List<String> finalStates = new ArrayList<>();
+        for (int state = 0; state < stateNames.length; state++) {
+            for (int e = epsilonOffsets[state]; e < epsilonOffsets[state + 1]; e++) {
+                transitions.add(new Transition(stateNames[state], EPSILON, stateNames[epsilonTargets[e]]));
+            }
+            for (int classId = 1; classId < classCount; classId++) {
+                int slot = state * classCount + classId;
+                for (int e = offsets[slot]; e < offsets[slot + 1]; e++) {
+                    for (char symbol : members[classId]) {
+                        transitions.add(new Transition(stateNames[state], String.valueOf(symbol),
+                                stateNames[targets[e]]));
+                    }
+                }
+            }
+            if (accepting[state]) {
+                finalStates.add(stateNames[state]);
+            }
+        }
+        return new FiniteAutomaton(stateNames.clone(), classes.getSymbols().clone(), transitions.toArray(new Transition[0]),
+                stateNames[initialState], finalStates.toArray(new String[0]), this);
+    }
+
+    // Merges every epsilon strongly connected component into one state whose edges are those of its closure
+    public CompiledAutomaton removeEpsilons() {
+        if (epsilonTargets.length == 0) {
+            return this;
+        }
+        int componentCount = closures.length / words;
+        int[] representative = new int[componentCount];
+        Arrays.fill(representative, -1);
+        for (int state = 0; state < stateNames.length; state++) {
+            if (representative[components[state]] < 0) {
+                representative[components[state]] = state;
+            }
+        }
+
+        String[] componentNames = new String[componentCount];
+        boolean[] componentAccepting = new boolean[componentCount];
+        int[] componentOffsets = new int[componentCount * classCount + 1];
+        int[] componentTargets = new int[Math.max(16, targets.length)];
+        long[] closure = new long[words];
+        long[] reached = new long[(componentCount + 63) >>> 6];
+        int size = 0;
+        for (int component = 0; component < componentCount; component++) {
+            componentNames[component] = stateNames[representative[component]];
+            System.arraycopy(closures, component * words, closure, 0, words);
+            componentAccepting[component] = isAccepting(closure);
+            for (int classId = 0; classId < classCount; classId++) {
+                Arrays.fill(reached, 0);
+                for (int member = nextMember(closure, 0); member >= 0; member = nextMember(closure, member + 1)) {
+                    int slot = member * classCount + classId;
+                    for (int e = offsets[slot]; e < offsets[slot + 1]; e++) {
+                        int target = components[targets[e]];
+                        reached[target >>> 6] |= 1L << target;
+                    }
+                }
+                for (int target = nextMember(reached, 0); target >= 0; target = nextMember(reached, target + 1)) {
+                    if (size == componentTargets.length) {
+                        componentTargets = Arrays.copyOf(componentTargets, size * 2);
+                    }
+                    componentTargets[size++] = target;
+                }
+                componentOffsets[component * classCount + classId + 1] = size;
+            }
+        }
+        componentTargets = Arrays.copyOf(componentTargets, size);
+        return new CompiledAutomaton(componentNames, classes, components[initialState], componentAccepting,
+                toTable(componentOffsets, componentTargets), componentOffsets, componentTargets,
+                new int[componentCount + 1], new int[0]);
+    }
+
+    @Override
+    public boolean accepts(CharSequence word) {
+        if (table != null) {
+            return acceptsDeterministic(word);
+        }
+        if (smallSuccessors != null) {
+            return acceptsSmall(word);
+        }
+        return acceptsNondeterministic(word);
+    }
+
+    // Compiled automata are immutable, so batches are spread over the common fork-join pool. Lists without
+    // constant-time get, such as LinkedList, are copied first so indexing stays linear overall
+    public boolean[] acceptsAll(List<? extends CharSequence> words) {
+        List<? extends CharSequence> indexed = words instanceof RandomAccess ? words : new ArrayList<>(words);
+        boolean[] results = new boolean[indexed.size()];
+        IntStream.range(0, results.length).parallel().forEach(i -> results[i] = accepts(indexed.get(i)));
+        return results;
+    }
+
+    public boolean[] acceptsAll(CharSequence[] words) {
+        return acceptsAll(Arrays.asList(words));
+    }
+
+    public BitSet acceptsAll(Stream<? extends CharSequence> words) {
+        BitSet results = new BitSet();
+        List<CharSequence> chunk = new ArrayList<>(BATCH_CHUNK);
+        int offset = 0;
+        Iterator<? extends CharSequence> iterator = words.sequential().iterator();
+        while (iterator.hasNext()) {
+            chunk.add(iterator.next());
+            if (chunk.size() == BATCH_CHUNK || !iterator.hasNext()) {
+                boolean[] accepted = acceptsAll(chunk);
+                for (int i = 0; i < accepted.length; i++) {
+                    if (accepted[i]) {
+                        results.set(offset + i);
+                    }
+                }
+                offset += accepted.length;
+                chunk.clear();
+            }
+        }
+        return results;
+    }
+
+    private boolean acceptsDeterministic(CharSequence word) {
+        int state = initialState;
+        for (int i = 0, n = word.length(); i < n; i++) {
+            state = table[state * classCount + classes.classOf(word.charAt(i))];
+            if (state == DEAD) {
+                return false;
+            }
+        }
+        return accepting[state];
+    }
+
+    private boolean acceptsSmall(CharSequence word) {
+        long live = liveBits[0];
+        long current = smallInitial & live;
+        for (int i = 0, n = word.length(); i < n && current != 0; i++) {
+            int classId = classes.classOf(word.charAt(i));
+            long next = 0;
+            for (long rest = current; rest != 0; rest &= rest - 1) {
+                next |= smallSuccessors[Long.numberOfTrailingZeros(rest) * classCount + classId];
+            }
+            current = next & live;
+        }
+        return (current & acceptingBits[0]) != 0;
+    }
+
+    private boolean acceptsNondeterministic(CharSequence word) {
+        long[] current = new long[words];
+        long[] next = new long[words];
+        initialSet(current);
+
+        for (int i = 0, n = word.length(); i < n; i++) {
+            if (!step(current, classes.classOf(word.charAt(i)), next)) {
+                return false;
+            }
+
+            long[] swap = current;
+            current = next;
+            next = swap;
+        }
+        return isAccepting(current);
+    }
+
+    private void orClosure(long[] set, int state) {
+        if (closures == null) {
+            set[state >>> 6] |= 1L << state;
+            return;
+        }
+        int base = components[state] * words;
+        for (int w = 0; w < words; w++) {
+            set[w] |= closures[base + w];
+        }
+    }
+
+    public Set<String> epsilonClosure(String state) {
+        Set<String> closure = new HashSet<>();
+        for (int id = 0; id < stateNames.length; id++) {
+            if (stateNames[id].equals(state)) {
+                if (closures == null) {
+                    closure.add(state);
+                    return closure;
+                }
+                for (int member = 0; member < stateNames.length; member++) {
+                    if ((closures[components[id] * words + (member >>> 6)] & (1L << member)) != 0) {
+                        closure.add(stateNames[member]);
+                    }
+                }
+                return closure;
+            }
+        }
+        closure.add(state);
+        return closure;
+    }
+
+    // States that can still reach an accepting state, found by a backwards search from the accepting ones
+    private long[] computeLive() {
+        int stateCount = stateNames.length;
+        int[] reverseOffsets = new int[stateCount + 1];
+        for (int target : targets) {
+            reverseOffsets[target + 1]++;
+        }
+        for (int target : epsilonTargets) {
+            reverseOffsets[target + 1]++;
+        }
+        for (int i = 1; i < reverseOffsets.length; i++) {
+            reverseOffsets[i] += reverseOffsets[i - 1];
+        }
+        int[] reverse = new int[reverseOffsets[stateCount]];
+        int[] fill = Arrays.copyOf(reverseOffsets, stateCount);
+        for (int state = 0; state < stateCount; state++) {
+            for (int e = offsets[state * classCount]; e < offsets[(state + 1) * classCount]; e++) {
+                reverse[fill[targets[e]]++] = state;
+            }
+            for (int e = epsilonOffsets[state]; e < epsilonOffsets[state + 1]; e++) {
+                reverse[fill[epsilonTargets[e]]++] = state;
+            }
+        }
+
+        long[] live = acceptingBits.clone();
+        int[] stack = new int[stateCount];
+        int size = 0;
+        for (int state = 0; state < stateCount; state++) {
+            if (accepting[state]) {
+                stack[size++] = state;
+            }
+        }
+        while (size > 0) {
+            int state = stack[--size];
+            for (int e = reverseOffsets[state]; e < reverseOffsets[state + 1]; e++) {
+                int source = reverse[e];
+                if ((live[source >>> 6] & (1L << source)) == 0) {
+                    live[source >>> 6] |= 1L << source;
+                    stack[size++] = source;
+                }
+            }
+        }
+        return live;
+    }
+
+    private long[] computeSmallSuccessors() {
+        long[] successors = new long[stateNames.length * classCount];
+        for (int slot = 0; slot < successors.length; slot++) {
+            for (int e = offsets[slot]; e < offsets[slot + 1]; e++) {
+                successors[slot] |= closures[components[targets[e]]];
+            }
+        }
+        return successors;
+    }
+
+    // Iterative Tarjan over the epsilon edges. Components complete in reverse topological order, so each
+    // closure row is its own members plus the already finished rows of the components it points into
+    private long[] computeClosures() {
+        int stateCount = stateNames.length;
+        long[] rows = new long[stateCount * words];
+        int[] index = new int[stateCount];
+        int[] low = new int[stateCount];
+        int[] cursor = new int[stateCount];
+        boolean[] onStack = new boolean[stateCount];
+        int[] stack = new int[stateCount];
+        int[] calls = new int[stateCount];
+        Arrays.fill(index, -1);
+        int visited = 0;
+        int stackSize = 0;
+        int componentCount = 0;
+
+        for (int root = 0; root < stateCount; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int callSize = 0;
+            index[root] = low[root] = visited++;
+            cursor[root] = epsilonOffsets[root];
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            calls[callSize++] = root;
+            while (callSize > 0) {
+                int state = calls[callSize - 1];
+                if (cursor[state] < epsilonOffsets[state + 1]) {
+                    int target = epsilonTargets[cursor[state]++];
+                    if (index[target] < 0) {
+                        index[target] = low[target] = visited++;
+                        cursor[target] = epsilonOffsets[target];
+                        stack[stackSize++] = target;
+                        onStack[target] = true;
+                        calls[callSize++] = target;
+                    } else if (onStack[target]) {
+                        low[state] = Math.min(low[state], index[target]);
+                    }
+                    continue;
+                }
+
+                callSize--;
+                if (callSize > 0) {
+                    int parent = calls[callSize - 1];
+                    low[parent] = Math.min(low[parent], low[state]);
+                }
+                if (low[state] != index[state]) {
+                    continue;
+                }
+                int component = componentCount++;
+                int base = component * words;
+                int first = stackSize;
+                do {
+                    int member = stack[--first];
+                    onStack[member] = false;
+                    components[member] = component;
+                    rows[base + (member >>> 6)] |= 1L << member;
+                } while (stack[first] != state);
+                for (int i = first; i < stackSize; i++) {
+                    int member = stack[i];
+                    for (int e = epsilonOffsets[member]; e < epsilonOffsets[member + 1]; e++) {
+                        int other = components[epsilonTargets[e]];
+                        if (other != component) {
+                            int otherBase = other * words;
+                            for (int w = 0; w < words; w++) {
+                                rows[base + w] |= rows[otherBase + w];
+                            }
+                        }
+                    }
+                }
+                stackSize = first;
+            }
+        }
+        return Arrays.copyOf(rows, componentCount * words);
+    }
+}
@@ -0,0 +1,333 @@
+package automaton;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+// Daciuk's incremental construction of the minimal acyclic DFA for a sorted word list: only the path of the
+// last word is mutable, everything behind it is frozen into a register of unique suffix states
+public class DictionaryBuilder {
+    // Frozen states, with their outgoing edges stored contiguously in the edge arrays
+    private int stateCount;
+    private boolean[] accepting = new boolean[64];
+    private int[] edgeStart = new int[64];
+    private int[] edgeCount = new int[64];
+    private char[] edgeChars = new char[256];
+    private int[] edgeTargets = new int[256];
+    private int edgeTotal;
+
+    // Open-addressing register of frozen states, holding id + 1 and 0 for free slots
+    private int[] register = new int[128];
+
+    // Nodes on the path of the previous word; the last edge of each leads to the next node on the path
+    private final List<PathNode> path = new ArrayList<>();
+    private String previous;
+    private int wordCount;
+    private boolean built;
+
+    public DictionaryBuilder() {
+        path.add(new PathNode());
+    }
+
+    public static CompiledAutomaton fromSortedWords(Stream<String> words) {
+        DictionaryBuilder builder = new DictionaryBuilder();
+        words.sequential().forEachOrdered(builder::add);
+        return builder.build();
+    }
+
+    // One word per line, sorted by String.compareTo
+    public static CompiledAutomaton fromSortedFile(Path path) throws IOException {
+        try (Stream<String> lines = Files.lines(path, StandardCharsets.UTF_8)) {
+            return fromSortedWords(lines);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public void add(String word) {
+        if (built) {
+            throw new IllegalStateException("The dictionary has already been built");
+        }
+        int prefix = 0;
+        if (previous != null) {
+            int order = word.compareTo(previous);
+            if (order < 0) {
+                throw new IllegalArgumentException("Words must be added in sorted order: \"" + word
+                        + "\" after \"" + previous + "\"");
+            }
+            if (order == 0) {
+                return;
+            }
+            int limit = Math.min(word.length(), previous.length());
+            while (prefix < limit && word.charAt(prefix) == previous.charAt(prefix)) {
+                prefix++;
+            }
+            freezeDownTo(prefix);
+        }
+
+        for (int i = prefix; i < word.length(); i++) {
+            path.get(i).addPending(word.charAt(i));
+            if (path.size() == i + 1) {
+                path.add(new PathNode());
+            } else {
+                path.get(i + 1).clear();
+            }
+        }
+        path.get(word.length()).accepting = true;
+        previous = word;
+        wordCount++;
+    }
+
+    public CompiledAutomaton build() {
+        if (!built) {
+            freezeDownTo(0);
+            built = true;
+        }
+        int root = freeze(path.get(0));
+        return toCompiled(root);
+    }
+
+    // Copies the frozen states straight into off-heap storage, keeping the register's numbering
+    public OffHeapAutomaton buildOffHeap() {
+        if (!built) {
+            freezeDownTo(0);
+            built = true;
+        }
+        int root = freeze(path.get(0));
+        OffHeapAutomaton.Builder builder = new OffHeapAutomaton.Builder(alphabet());
+        for (int state = 0; state < stateCount; state++) {
+            builder.addState(accepting[state]);
+            for (int e = edgeStart[state]; e < edgeStart[state] + edgeCount[state]; e++) {
+                builder.addEdge(edgeChars[e], edgeTargets[e]);
+            }
+        }
+        return builder.build(root);
+    }
+
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    // Number of distinct states frozen so far, which is the size of the minimal automaton once built
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    // Freezes every path node deeper than `depth`, deepest first, pointing each parent at the registered state
+    private void freezeDownTo(int depth) {
+        for (int d = previous == null ? 0 : previous.length(); d > depth; d--) {
+            PathNode parent = path.get(d - 1);
+            parent.targets[parent.size - 1] = freeze(path.get(d));
+        }
+    }
+
+    private int freeze(PathNode node) {
+        int hash = hash(node);
+        int mask = register.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = register[slot];
+            if (entry == 0) {
+                int id = store(node);
+                register[slot] = id + 1;
+                if (stateCount * 2 > register.length) {
+                    growRegister();
+                }
+                return id;
+            }
+            if (matches(entry - 1, node)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private int store(PathNode node) {
+        int id = stateCount++;
+        if (id == accepting.length) {
+            accepting = Arrays.copyOf(accepting, id * 2);
+            edgeStart = Arrays.copyOf(edgeStart, id * 2);
+            edgeCount = Arrays.copyOf(edgeCount, id * 2);
+        }
+        if (edgeTotal + node.size > edgeChars.length) {
+            int capacity = Math.max(edgeTotal + node.size, edgeChars.length * 2);
+            edgeChars = Arrays.copyOf(edgeChars, capacity);
+            edgeTargets = Arrays.copyOf(edgeTargets, capacity);
+        }
+        accepting[id] = node.accepting;
+        edgeStart[id] = edgeTotal;
+        edgeCount[id] = node.size;
+        System.arraycopy(node.chars, 0, edgeChars, edgeTotal, node.size);
+        System.arraycopy(node.targets, 0, edgeTargets, edgeTotal, node.size);
+        edgeTotal += node.size;
+        return id;
+    }
+
+    private boolean matches(int state, PathNode node) {
+        if (accepting[state] != node.accepting || edgeCount[state] != node.size) {
+            return false;
+        }
+        int start = edgeStart[state];
+        for (int i = 0; i < node.size; i++) {
+            if (edgeChars[start + i] != node.chars[i] || edgeTargets[start + i] != node.targets[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void growRegister() {
+        register = new int[register.length * 2];
+        int mask = register.length - 1;
+        for (int state = 0; state < stateCount; state++) {
+            int slot = hash(state) & mask;
+            while (register[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            register[slot] = state + 1;
+        }
+    }
+
+    private static int hash(PathNode node) {
+        int hash = node.accepting ? 1 : 0;
+        for (int i = 0; i < node.size; i++) {
+            hash = (hash * 31 + node.chars[i]) * 31 + node.targets[i];
+        }
+        return mix(hash);
+    }
+
+    private int hash(int state) {
+        int hash = accepting[state] ? 1 : 0;
+        for (int e = edgeStart[state]; e < edgeStart[state] + edgeCount[state]; e++) {
+            hash = (hash * 31 + edgeChars[e]) * 31 + edgeTargets[e];
+        }
+        return mix(hash);
+    }
+
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    // Renumbers states breadth-first from the root so the initial state is q0. The table has one column per
+    // class of characters that no state tells apart, so it grows with the distinct columns and not with the
+    // alphabet; buildOffHeap keeps the edge lists instead for alphabets whose characters stay distinct
+    private CompiledAutomaton toCompiled(int root) {
+        int[] renamed = new int[stateCount];
+        Arrays.fill(renamed, -1);
+        int[] order = new int[stateCount];
+        int count = 0;
+        renamed[root] = count;
+        order[count++] = root;
+        for (int i = 0; i < count; i++) {
+            int state = order[i];
+            for (int e = edgeStart[state]; e < edgeStart[state] + edgeCount[state]; e++) {
+                int target = edgeTargets[e];
+                if (renamed[target] < 0) {
+                    renamed[target] = count;
+                    order[count++] = target;
+                }
+            }
+        }
+
+        AlphabetClasses classes = classesOf(order, count, renamed);
+        int classCount = classes.getClassCount();
+        int[] table = new int[count * classCount];
+        Arrays.fill(table, CompiledAutomaton.DEAD);
+        boolean[] acceptingStates = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            int state = order[i];
+            acceptingStates[i] = accepting[state];
+            for (int e = edgeStart[state]; e < edgeStart[state] + edgeCount[state]; e++) {
+                table[i * classCount + classes.classOf(edgeChars[e])] = renamed[edgeTargets[e]];
+            }
+        }
+
+        String[] stateNames = new String[count];
+        for (int i = 0; i < count; i++) {
+            stateNames[i] = "q" + i;
+        }
+        return CompiledAutomaton.fromTable(stateNames, classes, 0, acceptingStates, table);
+    }
+
+    // Characters whose (state, target) edge lists agree share a class; the lists together hold every reachable
+    // edge once, so this is linear in the automaton
+    private AlphabetClasses classesOf(int[] order, int count, int[] renamed) {
+        int[] charOffsets = new int[Character.MAX_VALUE + 2];
+        for (int i = 0; i < count; i++) {
+            int state = order[i];
+            for (int e = edgeStart[state]; e < edgeStart[state] + edgeCount[state]; e++) {
+                charOffsets[edgeChars[e] + 1] += 2;
+            }
+        }
+        for (int c = 1; c < charOffsets.length; c++) {
+            charOffsets[c] += charOffsets[c - 1];
+        }
+        int[] pairs = new int[charOffsets[charOffsets.length - 1]];
+        int[] fill = Arrays.copyOf(charOffsets, charOffsets.length - 1);
+        for (int i = 0; i < count; i++) {
+            int state = order[i];
+            for (int e = edgeStart[state]; e < edgeStart[state] + edgeCount[state]; e++) {
+                pairs[fill[edgeChars[e]]++] = i;
+                pairs[fill[edgeChars[e]]++] = renamed[edgeTargets[e]];
+            }
+        }
+
+        List<String> symbols = new ArrayList<>();
+        List<Integer> classOfSymbol = new ArrayList<>();
+        Map<IntBuffer, Integer> signatures = new HashMap<>();
+        int classCount = 1;
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            if (charOffsets[c] == charOffsets[c + 1]) {
+                continue;
+            }
+            IntBuffer signature = IntBuffer.wrap(pairs, charOffsets[c], charOffsets[c + 1] - charOffsets[c]);
+            Integer classId = signatures.putIfAbsent(signature, classCount);
+            if (classId == null) {
+                classId = classCount++;
+            }
+            symbols.add(String.valueOf((char) c));
+            classOfSymbol.add(classId);
+        }
+        return new AlphabetClasses(symbols.toArray(new String[0]),
+                classOfSymbol.stream().mapToInt(Integer::intValue).toArray(), classCount);
+    }
+
+    // Every character used on an edge, in increasing order
+    private String[] alphabet() {
+        TreeSet<Character> used = new TreeSet<>();
+        for (int e = 0; e < edgeTotal; e++) {
+            used.add(edgeChars[e]);
+        }
+        String[] symbols = new String[used.size()];
+        int symbol = 0;
+        for (char c : used) {
+            symbols[symbol++] = String.valueOf(c);
+        }
+        return symbols;
+    }
+
+    private static final class PathNode {
+        private boolean accepting;
+        private char[] chars = new char[4];
+        private int[] targets = new int[4];
+        private int size;
+
+        void addPending(char c) {
+            if (size == chars.length) {
+                chars = Arrays.copyOf(chars, size * 2);
+                targets = Arrays.copyOf(targets, size * 2);
+            }
+            chars[size] = c;
+            targets[size++] = -1;
+        }
+
+        void clear() {
+            accepting = false;
+            size = 0;
+        }
+    }
+}
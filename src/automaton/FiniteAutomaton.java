@@ -3,10 +3,10 @@ package automaton;
 import grammar.Grammar;
 import grammar.Production;
 
+import java.math.BigInteger;
 import java.util.*;
 import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class FiniteAutomaton {
     private final String[] states;
@@ -14,6 +14,7 @@ public class FiniteAutomaton {
     private Transition[] transitions;
     private final String initialState;
     private final String[] finalStates;
+    private volatile CompiledAutomaton compiled;
 
     public FiniteAutomaton(String[] states, String[] alphabet,  Transition[] transitions,
                            String initialState, String[] finalStates) {
@@ -24,59 +25,76 @@ public class FiniteAutomaton {
         this.finalStates = finalStates;
     }
 
+    FiniteAutomaton(String[] states, String[] alphabet, Transition[] transitions,
+                    String initialState, String[] finalStates, CompiledAutomaton compiled) {
+        this(states, alphabet, transitions, initialState, finalStates);
+        this.compiled = compiled;
+    }
+
+    public CompiledAutomaton compile() {
+        CompiledAutomaton result = this.compiled;
+        if (result == null) {
+            result = CompiledAutomaton.compile(this.states, this.alphabet, this.transitions,
+                    this.initialState, this.finalStates);
+            this.compiled = result;
+        }
+        return result;
+    }
+
     public boolean isWordValid(String str) {
-        Set<String> currentStates = epsilonClosure(this.initialState);
+        return compile().accepts(str);
+    }
 
-        for (char c : str.toCharArray()) {
-            Set<String> nextStates = new HashSet<>();
+    public boolean[] areWordsValid(List<String> words) {
+        return compile().acceptsAll(words);
+    }
 
-            for (String currentState : currentStates) {
-                for (Transition t : this.transitions) {
-                    if (Objects.equals(t.getCurrentState(), currentState) &&
-                            Objects.equals(t.getTransitionLabel(), String.valueOf(c))) {
-                        nextStates.addAll(epsilonClosure(t.getNextState()));
-                    }
-                }
-            }
+    public boolean[] areWordsValid(String[] words) {
+        return compile().acceptsAll(words);
+    }
 
-            if (nextStates.isEmpty()) {
-                return false;
-            }
+    public BitSet areWordsValid(Stream<String> words) {
+        return compile().acceptsAll(words);
+    }
 
-            currentStates = nextStates;
-        }
+    public LazyDfa toLazyDfa(int maxCachedStates) {
+        return new LazyDfa(compile(), maxCachedStates);
+    }
 
-        for (String finalState : this.finalStates) {
-            if (currentStates.contains(finalState)) {
-                return true;
-            }
-        }
+    public Matcher toGeneratedMatcher() {
+        return new MatcherGenerator(new SubsetConstruction(compile()).determinize()).compile();
+    }
 
-        return false;
+    public StreamingMatcher toStreamingMatcher() {
+        return new StreamingMatcher(compile());
     }
 
-    public Set<String> epsilonClosure(String state) {
-        Set<String> closure = new HashSet<>();
-        closure.add(state);
-
-        Stack<String> stack = new Stack<>();
-        stack.push(state);
-
-        while (!stack.isEmpty()) {
-            String currentState = stack.pop();
-            for (Transition t : transitions) {
-                if (Objects.equals(t.getCurrentState(), currentState)
-                        && Objects.equals(t.getTransitionLabel(), "e")) {
-                    String nextState = t.getNextState();
-                    if (!closure.contains(nextState)) {
-                        closure.add(nextState);
-                        stack.push(nextState);
-                    }
-                }
-            }
-        }
+    public LanguageCheck equivalentTo(FiniteAutomaton other) {
+        return new LanguageComparison(compile(), other.compile()).equivalent();
+    }
+
+    public LanguageCheck includedIn(FiniteAutomaton other) {
+        return new LanguageComparison(compile(), other.compile()).included();
+    }
+
+    public BigInteger countWords(int length) {
+        return countWordsByLength(length)[length];
+    }
+
+    public BigInteger[] countWordsByLength(int maxLength) {
+        return WordSampler.countByLength(new SubsetConstruction(compile()).determinize(), maxLength);
+    }
+
+    public WordSampler sampler(int length) {
+        return new WordSampler(new SubsetConstruction(compile()).determinize(), length);
+    }
+
+    public FiniteAutomaton removeEpsilons() {
+        return compile().removeEpsilons().toFiniteAutomaton();
+    }
 
-        return closure;
+    public Set<String> epsilonClosure(String state) {
+        return compile().epsilonClosure(state);
     }
 
 
@@ -136,62 +154,16 @@ public class FiniteAutomaton {
     }
 
     public FiniteAutomaton convertToDFA() {
-        Set<Set<String>> powerSet = getPowerSet(states);
-        Map<Set<String>, Map<String, Set<String>>> dfaTransitions = new HashMap<>();
-        Set<String> dfaFinalStates = new HashSet<>();
-        String dfaInitialState = initialState;
-
-        // Compute DFA transitions and final states
-        for (Set<String> stateSet : powerSet) {
-            Map<String, Set<String>> transitions = new HashMap<>();
-            for (String symbol : alphabet) {
-                Set<String> nextStates = new HashSet<>();
-                for (String state : stateSet) {
-                    for (Transition transition : transitionsFrom(state, symbol)) {
-                        nextStates.add(transition.getNextState());
-                    }
-                }
-                if (!nextStates.isEmpty()) {
-                    transitions.put(symbol, nextStates);
-                }
-            }
-            dfaTransitions.put(stateSet, transitions);
-            if (stateSet.containsAll(Arrays.asList(finalStates))) {
-                dfaFinalStates.add(stateSet.toString());
-            }
-        }
+        return new SubsetConstruction(compile()).determinize().toFiniteAutomaton();
+    }
 
-        return new FiniteAutomaton(
-                powerSet.stream().map(Set::toString).toArray(String[]::new),
-                alphabet,
-                dfaTransitions.entrySet().stream().flatMap(e -> e.getValue().entrySet().stream().map(entry -> new Transition(e.getKey().toString(),
-                entry.getKey(),
-                entry.getValue().toString()))).toArray(Transition[]::new),
-                dfaInitialState,
-                dfaFinalStates.stream().toArray(String[]::new)
-        );
-    }
-
-    private Set<Set<String>> getPowerSet(String[] set) {
-        Set<Set<String>> powerSet = new HashSet<>();
-        int setSize = set.length;
-        long powSetSize = (long) Math.pow(2, setSize);
-        for (int counter = 0; counter < powSetSize; counter++) {
-            Set<String> subset = new HashSet<>();
-            for (int j = 0; j < setSize; j++) {
-                if ((counter & (1 << j)) != 0) {
-                    subset.add(set[j]);
-                }
-            }
-            powerSet.add(subset);
-        }
-        return powerSet;
+    public FiniteAutomaton convertToDFAParallel() {
+        return new SubsetConstruction(compile()).determinizeParallel().toFiniteAutomaton();
     }
 
-    private List<Transition> transitionsFrom(String state, String symbol) {
-        return Arrays.stream(transitions)
-                .filter(t -> t.getCurrentState().equals(state) && t.getTransitionLabel().equals(symbol))
-                .collect(Collectors.toList());
+    public FiniteAutomaton minimize() {
+        CompiledAutomaton dfa = new SubsetConstruction(compile()).determinize();
+        return new Minimization(dfa).minimize().toFiniteAutomaton();
     }
 
 
@@ -0,0 +1,25 @@
+package automaton;
+
+public class LanguageCheck {
+    private final boolean holds;
+    private final String counterexample;
+
+    LanguageCheck(boolean holds, String counterexample) {
+        this.holds = holds;
+        this.counterexample = counterexample;
+    }
+
+    public boolean holds() {
+        return holds;
+    }
+
+    // A shortest word telling the languages apart, or null when the check holds
+    public String getCounterexample() {
+        return counterexample;
+    }
+
+    @Override
+    public String toString() {
+        return holds ? "holds" : "fails on \"" + counterexample + "\"";
+    }
+}
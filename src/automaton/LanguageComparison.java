@@ -0,0 +1,179 @@
+package automaton;
+
+import java.util.*;
+
+// Hopcroft-Karp bisimulation up to equivalence over subsets of the disjoint union of two automata,
+// determinized lazily so only the pairs the check actually visits are ever built
+class LanguageComparison {
+    private static final int UNKNOWN = -2;
+
+    private final CompiledAutomaton[] parts;
+    private final int[] wordOffsets;
+    private final ProductAlphabet alphabet;
+    private final int classCount;
+
+    private final Map<StateSet, Integer> ids = new HashMap<>();
+    private final List<long[]> sets = new ArrayList<>();
+    private boolean[] accepting = new boolean[0];
+    private int[] next = new int[0];
+    private int[] parent = new int[0];
+    private int[] rank = new int[0];
+
+    LanguageComparison(CompiledAutomaton left, CompiledAutomaton right) {
+        this.parts = new CompiledAutomaton[]{left, right};
+        this.wordOffsets = new int[]{0, left.getWords(), left.getWords() + right.getWords()};
+        this.alphabet = new ProductAlphabet(parts);
+        this.classCount = alphabet.getClassCount();
+    }
+
+    LanguageCheck equivalent() {
+        return compare(initial(true, false), initial(false, true));
+    }
+
+    // L(left) is included in L(right) exactly when the union of both accepts the same language as right
+    LanguageCheck included() {
+        return compare(initial(true, true), initial(false, true));
+    }
+
+    private LanguageCheck compare(int left, int right) {
+        ArrayDeque<int[]> pending = new ArrayDeque<>();
+        union(left, right);
+        pending.add(new int[]{left, right});
+        while (!pending.isEmpty()) {
+            int[] pair = pending.poll();
+            if (accepting[pair[0]] != accepting[pair[1]]) {
+                return new LanguageCheck(false, shortestCounterexample(left, right));
+            }
+            // Class 0 sends both sides to the empty set, so it never separates anything
+            for (int classId = 1; classId < classCount; classId++) {
+                int p = successor(pair[0], classId);
+                int q = successor(pair[1], classId);
+                if (find(p) != find(q)) {
+                    union(p, q);
+                    pending.add(new int[]{p, q});
+                }
+            }
+        }
+        return new LanguageCheck(true, null);
+    }
+
+    // Plain breadth-first search of the pair graph, only run once the languages are known to differ
+    private String shortestCounterexample(int left, int right) {
+        Map<Long, long[]> parents = new HashMap<>();
+        ArrayDeque<Long> pending = new ArrayDeque<>();
+        long start = pack(left, right);
+        parents.put(start, null);
+        pending.add(start);
+        while (!pending.isEmpty()) {
+            long pair = pending.poll();
+            int p = (int) (pair >>> 32);
+            int q = (int) pair;
+            if (accepting[p] != accepting[q]) {
+                StringBuilder word = new StringBuilder();
+                for (long[] step = parents.get(pair); step != null; step = parents.get(step[0])) {
+                    word.append(alphabet.getClasses().membersOf((int) step[1])[0]);
+                }
+                return word.reverse().toString();
+            }
+            for (int classId = 1; classId < classCount; classId++) {
+                long target = pack(successor(p, classId), successor(q, classId));
+                if (!parents.containsKey(target)) {
+                    parents.put(target, new long[]{pair, classId});
+                    pending.add(target);
+                }
+            }
+        }
+        throw new IllegalStateException("No pair separates the languages");
+    }
+
+    private static long pack(int left, int right) {
+        return ((long) left << 32) | (right & 0xFFFFFFFFL);
+    }
+
+    private int initial(boolean withLeft, boolean withRight) {
+        long[] set = new long[wordOffsets[parts.length]];
+        boolean[] included = {withLeft, withRight};
+        for (int i = 0; i < parts.length; i++) {
+            if (included[i]) {
+                long[] part = new long[parts[i].getWords()];
+                parts[i].initialSet(part);
+                parts[i].retainLive(part);
+                System.arraycopy(part, 0, set, wordOffsets[i], part.length);
+            }
+        }
+        return intern(set);
+    }
+
+    private int successor(int state, int classId) {
+        int slot = state * classCount + classId;
+        if (next[slot] != UNKNOWN) {
+            return next[slot];
+        }
+        long[] from = sets.get(state);
+        long[] successor = new long[from.length];
+        for (int i = 0; i < parts.length; i++) {
+            int localClass = alphabet.localClass(classId, i);
+            long[] part = Arrays.copyOfRange(from, wordOffsets[i], wordOffsets[i + 1]);
+            long[] stepped = new long[part.length];
+            if (localClass != 0 && parts[i].step(part, localClass, stepped)) {
+                parts[i].retainLive(stepped);
+                System.arraycopy(stepped, 0, successor, wordOffsets[i], stepped.length);
+            }
+        }
+        int target = intern(successor);
+        next[slot] = target;
+        return target;
+    }
+
+    private int intern(long[] set) {
+        StateSet key = new StateSet(set);
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        id = sets.size();
+        if (id == parent.length) {
+            int capacity = Math.max(16, parent.length * 2);
+            parent = Arrays.copyOf(parent, capacity);
+            rank = Arrays.copyOf(rank, capacity);
+            accepting = Arrays.copyOf(accepting, capacity);
+            int old = next.length;
+            next = Arrays.copyOf(next, capacity * classCount);
+            Arrays.fill(next, old, next.length, UNKNOWN);
+        }
+        parent[id] = id;
+        boolean accepts = false;
+        for (int i = 0; i < parts.length; i++) {
+            accepts |= parts[i].isAccepting(Arrays.copyOfRange(set, wordOffsets[i], wordOffsets[i + 1]));
+        }
+        ids.put(key, id);
+        sets.add(set);
+        accepting[id] = accepts;
+        return id;
+    }
+
+    private int find(int state) {
+        while (parent[state] != state) {
+            parent[state] = parent[parent[state]];
+            state = parent[state];
+        }
+        return state;
+    }
+
+    private void union(int a, int b) {
+        a = find(a);
+        b = find(b);
+        if (a == b) {
+            return;
+        }
+        if (rank[a] < rank[b]) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        parent[b] = a;
+        if (rank[a] == rank[b]) {
+            rank[a]++;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package automaton;
+
+import java.util.*;
+
+// Builds DFA states on demand while matching; instances keep mutable caches and are not thread-safe
+public class LazyDfa implements Matcher {
+    private static final int UNKNOWN = -2;
+    private static final int FALLBACK_FACTOR = 10;
+
+    private final CompiledAutomaton nfa;
+    private final int classCount;
+    private final int maxStates;
+    private final long[] initial;
+
+    private final Map<StateSet, Integer> ids = new HashMap<>();
+    private final List<long[]> sets = new ArrayList<>();
+    private int[] next;
+    private boolean[] accepting;
+
+    private long sinceFlush;
+    private long cacheHits;
+    private long cacheMisses;
+    private long cacheFlushes;
+    private long fallbacks;
+
+    public LazyDfa(CompiledAutomaton nfa, int maxStates) {
+        if (maxStates < 3) {
+            throw new IllegalArgumentException("The cache must hold at least 3 states");
+        }
+        this.nfa = nfa;
+        this.classCount = nfa.getClassCount();
+        this.maxStates = maxStates;
+        this.initial = new long[nfa.getWords()];
+        nfa.initialSet(initial);
+        this.next = new int[Math.min(maxStates, 64) * classCount];
+        this.accepting = new boolean[Math.min(maxStates, 64)];
+        flush();
+    }
+
+    @Override
+    public boolean accepts(CharSequence word) {
+        AlphabetClasses classes = nfa.getClasses();
+        int state = 0;
+        for (int i = 0, n = word.length(); i < n; i++) {
+            int classId = classes.classOf(word.charAt(i));
+            if (classId == 0) {
+                return false;
+            }
+            int slot = state * classCount + classId;
+            int target = next[slot];
+            if (target == UNKNOWN) {
+                cacheMisses++;
+                if (sets.size() == maxStates) {
+                    // Thrashing: the cache keeps filling up faster than it pays for itself
+                    if (sinceFlush < (long) FALLBACK_FACTOR * maxStates) {
+                        fallbacks++;
+                        return simulate(sets.get(state), word, i);
+                    }
+                    long[] current = sets.get(state);
+                    flush();
+                    state = intern(current);
+                    slot = state * classCount + classId;
+                    sinceFlush = 0;
+                }
+                target = computeNext(state, classId);
+                next[slot] = target;
+            } else {
+                cacheHits++;
+            }
+            if (target == CompiledAutomaton.DEAD) {
+                return false;
+            }
+            state = target;
+            sinceFlush++;
+        }
+        return accepting[state];
+    }
+
+    private int computeNext(int state, int classId) {
+        long[] successor = new long[nfa.getWords()];
+        if (!nfa.step(sets.get(state), classId, successor)) {
+            return CompiledAutomaton.DEAD;
+        }
+        return intern(successor);
+    }
+
+    private int intern(long[] set) {
+        StateSet key = new StateSet(set);
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        id = sets.size();
+        if (id == accepting.length) {
+            int capacity = Math.min(maxStates, accepting.length * 2);
+            next = Arrays.copyOf(next, capacity * classCount);
+            Arrays.fill(next, id * classCount, next.length, UNKNOWN);
+            accepting = Arrays.copyOf(accepting, capacity);
+        }
+        ids.put(key, id);
+        sets.add(set);
+        accepting[id] = nfa.isAccepting(set);
+        return id;
+    }
+
+    private void flush() {
+        if (!sets.isEmpty()) {
+            cacheFlushes++;
+        }
+        ids.clear();
+        sets.clear();
+        Arrays.fill(next, UNKNOWN);
+        intern(initial);
+    }
+
+    // Finishes the match on the bitset NFA, starting from `current` at position `from`
+    private boolean simulate(long[] current, CharSequence word, int from) {
+        AlphabetClasses classes = nfa.getClasses();
+        long[] set = current.clone();
+        long[] successor = new long[set.length];
+        for (int i = from, n = word.length(); i < n; i++) {
+            if (!nfa.step(set, classes.classOf(word.charAt(i)), successor)) {
+                return false;
+            }
+            long[] swap = set;
+            set = successor;
+            successor = swap;
+        }
+        return nfa.isAccepting(set);
+    }
+
+    public int getCachedStateCount() {
+        return sets.size();
+    }
+
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    public long getCacheFlushes() {
+        return cacheFlushes;
+    }
+
+    public long getFallbacks() {
+        return fallbacks;
+    }
+}
@@ -0,0 +1,158 @@
+package automaton;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// A deterministic automaton matched directly over a memory-mapped file written by CompiledAutomaton.writeTo
+public class MappedAutomaton implements Matcher {
+    private final int stateCount;
+    private final int classCount;
+    private final int initialState;
+    private final LongBuffer accepting;
+    private final IntBuffer table;
+    private final CharBuffer symbols;
+    private final ByteBuffer narrowClasses;
+    private final CharBuffer wideClasses;
+    private final int lookupLength;
+
+    // Every header field, the file length, each table target and each class in the lookup are checked, so a
+    // corrupted file fails here instead of reading out of bounds or wandering between states while matching
+    private MappedAutomaton(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < AutomatonFormat.HEADER_BYTES || buffer.getInt(0) != AutomatonFormat.MAGIC) {
+            throw new IOException("Not a compiled automaton file");
+        }
+        int version = buffer.getInt(4);
+        if (version != AutomatonFormat.VERSION) {
+            throw new IOException("Unsupported automaton file version " + version);
+        }
+        this.stateCount = buffer.getInt(8);
+        this.classCount = buffer.getInt(12);
+        this.initialState = buffer.getInt(16);
+        int symbolCount = buffer.getInt(20);
+        this.lookupLength = buffer.getInt(24);
+        int lookupWidth = buffer.getInt(28);
+        if (stateCount <= 0) {
+            throw new IOException("Corrupted automaton file: state count " + stateCount);
+        }
+        if (classCount <= 0 || classCount > Character.MAX_VALUE + 2) {
+            throw new IOException("Corrupted automaton file: class count " + classCount);
+        }
+        if (initialState < 0 || initialState >= stateCount) {
+            throw new IOException("Corrupted automaton file: initial state " + initialState
+                    + " outside 0.." + (stateCount - 1));
+        }
+        if (symbolCount < 0 || symbolCount > Character.MAX_VALUE + 1) {
+            throw new IOException("Corrupted automaton file: symbol count " + symbolCount);
+        }
+        if (lookupLength < 0 || lookupLength > Character.MAX_VALUE + 1) {
+            throw new IOException("Corrupted automaton file: lookup length " + lookupLength);
+        }
+        if (lookupWidth != Byte.BYTES && lookupWidth != Character.BYTES) {
+            throw new IOException("Corrupted automaton file: lookup width " + lookupWidth);
+        }
+
+        long words = (stateCount + 63) >>> 6;
+        long tableLength = (long) stateCount * classCount;
+        long expected = AutomatonFormat.HEADER_BYTES + words * Long.BYTES + tableLength * Integer.BYTES
+                + (long) symbolCount * Character.BYTES + (long) lookupLength * lookupWidth;
+        if (buffer.capacity() != expected) {
+            throw new IOException("Corrupted automaton file: header describes " + expected + " bytes but the file has "
+                    + buffer.capacity());
+        }
+
+        long position = AutomatonFormat.HEADER_BYTES;
+        this.accepting = slice(buffer, position, words * Long.BYTES).asLongBuffer();
+        position += words * Long.BYTES;
+        this.table = slice(buffer, position, tableLength * Integer.BYTES).asIntBuffer();
+        position += tableLength * Integer.BYTES;
+        this.symbols = slice(buffer, position, (long) symbolCount * Character.BYTES).asCharBuffer();
+        position += (long) symbolCount * Character.BYTES;
+        ByteBuffer lookup = slice(buffer, position, (long) lookupLength * lookupWidth);
+        this.narrowClasses = lookupWidth == Byte.BYTES ? lookup : null;
+        this.wideClasses = lookupWidth == Byte.BYTES ? null : lookup.asCharBuffer();
+
+        for (int i = 0; i < table.limit(); i++) {
+            int target = table.get(i);
+            if (target != CompiledAutomaton.DEAD && (target < 0 || target >= stateCount)) {
+                throw new IOException("Corrupted automaton file: state " + i / classCount + " goes to state "
+                        + target + " outside 0.." + (stateCount - 1));
+            }
+            if (i % classCount == 0 && target != CompiledAutomaton.DEAD) {
+                throw new IOException("Corrupted automaton file: state " + i / classCount + " leaves the dead class");
+            }
+        }
+        for (int c = 0; c < lookupLength; c++) {
+            int classId = classOf((char) c);
+            if (classId >= classCount) {
+                throw new IOException("Corrupted automaton file: character " + c + " maps to class " + classId
+                        + " outside 0.." + (classCount - 1));
+            }
+        }
+    }
+
+    public static MappedAutomaton load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Corrupted automaton file: " + channel.size() + " bytes is more than one mapping");
+            }
+            // The mapping stays valid after the channel is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedAutomaton(buffer.order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, long position, long length) {
+        return buffer.duplicate().position((int) position).limit((int) (position + length)).slice()
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    private int classOf(char c) {
+        if (c >= lookupLength) {
+            return 0;
+        }
+        return narrowClasses != null ? narrowClasses.get(c) & 0xFF : wideClasses.get(c);
+    }
+
+    @Override
+    public boolean accepts(CharSequence word) {
+        int state = initialState;
+        for (int i = 0, n = word.length(); i < n; i++) {
+            state = table.get(state * classCount + classOf(word.charAt(i)));
+            if (state == CompiledAutomaton.DEAD) {
+                return false;
+            }
+        }
+        return (accepting.get(state >>> 6) & (1L << state)) != 0;
+    }
+
+    // Copies the mapped tables back onto the heap; states are named q0, q1, ... as names are not stored
+    public CompiledAutomaton toCompiledAutomaton() {
+        String[] stateNames = new String[stateCount];
+        boolean[] acceptingStates = new boolean[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            stateNames[state] = "q" + state;
+            acceptingStates[state] = (accepting.get(state >>> 6) & (1L << state)) != 0;
+        }
+        String[] symbolNames = new String[symbols.limit()];
+        int[] classOfSymbol = new int[symbolNames.length];
+        for (int symbol = 0; symbol < symbolNames.length; symbol++) {
+            symbolNames[symbol] = String.valueOf(symbols.get(symbol));
+            classOfSymbol[symbol] = classOf(symbols.get(symbol));
+        }
+        int[] transitions = new int[table.limit()];
+        table.get(0, transitions);
+        return CompiledAutomaton.fromTable(stateNames, new AlphabetClasses(symbolNames, classOfSymbol, classCount),
+                initialState, acceptingStates, transitions);
+    }
+}
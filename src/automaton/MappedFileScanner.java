@@ -0,0 +1,245 @@
+package automaton;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+// Scans UTF-8 files through memory-mapped windows. Malformed bytes read as U+FFFD, characters outside the BMP
+// as their two surrogates, and every reported span is a pair of byte offsets
+public class MappedFileScanner {
+    private static final int WINDOW_BITS = 30;
+    private static final long WINDOW_SIZE = 1L << WINDOW_BITS;
+    private static final int REPLACEMENT = 0xFFFD;
+    // decode packs the byte length above the 21 bits of the code point
+    private static final int CODE_POINT_BITS = 21;
+
+    public interface SpanListener {
+        void onSpan(long lineNumber, long start, long end);
+    }
+
+    // Candidate matches that begin after the pending match of the group before them ends; bestStart is -1
+    // until one of the group's threads accepts
+    private static final class Group {
+        private long bestStart = -1;
+        private long bestEnd;
+    }
+
+    private final CompiledAutomaton automaton;
+    // Deterministic copy for scanMatches, whose threads are single states; only built once scanMatches runs,
+    // as scanLines simulates the automaton as it is
+    private volatile CompiledAutomaton dfa;
+
+    public MappedFileScanner(CompiledAutomaton automaton) {
+        this.automaton = automaton;
+    }
+
+    private CompiledAutomaton dfa() {
+        CompiledAutomaton result = this.dfa;
+        if (result == null) {
+            result = automaton.isDeterministic() ? automaton : new SubsetConstruction(automaton).determinize();
+            this.dfa = result;
+        }
+        return result;
+    }
+
+    // Reports every line the automaton accepts as a whole, without its line terminator
+    public long scanLines(Path file, SpanListener listener) throws IOException {
+        StreamingMatcher matcher = new StreamingMatcher(automaton);
+        long accepted = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer[] windows = map(channel);
+            long size = channel.size();
+            long lineNumber = 1;
+            long lineStart = 0;
+            // A '\r' is only fed once the next byte shows it does not end the line
+            boolean pendingReturn = false;
+            for (long position = 0; position <= size; ) {
+                byte b = position < size ? byteAt(windows, position) : (byte) '\n';
+                if (b == '\n') {
+                    long lineEnd = pendingReturn ? position - 1 : position;
+                    if (matcher.isAccepting() && (position < size || lineEnd > lineStart)) {
+                        listener.onSpan(lineNumber, lineStart, lineEnd);
+                        accepted++;
+                    }
+                    matcher.reset();
+                    pendingReturn = false;
+                    lineNumber++;
+                    lineStart = ++position;
+                    continue;
+                }
+                if (pendingReturn) {
+                    matcher.feed('\r');
+                }
+                pendingReturn = b == '\r';
+                if (pendingReturn) {
+                    position++;
+                    continue;
+                }
+                int decoded = decode(windows, position, size);
+                feed(matcher, decoded & ((1 << CODE_POINT_BITS) - 1));
+                position += decoded >>> CODE_POINT_BITS;
+            }
+        }
+        return accepted;
+    }
+
+    // Reports the leftmost-longest, non-overlapping accepted spans inside each line in one pass. A thread is
+    // started at every character and steps the DFA; threads in the same state share every future, so only
+    // the earliest is kept and at most one thread per state is alive. Once a group's thread accepts, later
+    // threads of the group overlap its match and are dropped, new threads go to a new group, and the match
+    // is reported when the threads that could still extend or precede it have died
+    public long scanMatches(Path file, SpanListener listener) throws IOException {
+        CompiledAutomaton dfa = dfa();
+        int stateCount = dfa.getStateCount();
+        int classCount = dfa.getClassCount();
+        int[] table = dfa.getTable();
+        AlphabetClasses classes = dfa.getClasses();
+        int initial = dfa.getInitialState();
+        boolean seedable = dfa.isLive(initial);
+
+        // Threads ordered by start, which also orders them by group
+        int[] states = new int[stateCount + 1];
+        long[] starts = new long[stateCount + 1];
+        Group[] groups = new Group[stateCount + 1];
+        int threadCount = 0;
+        long[] seen = new long[stateCount];
+        long step = 0;
+        ArrayDeque<Group> pending = new ArrayDeque<>();
+
+        long accepted = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer[] windows = map(channel);
+            long size = channel.size();
+            long lineNumber = 1;
+            for (long position = 0; position <= size; ) {
+                byte b = position < size ? byteAt(windows, position) : (byte) '\n';
+                if (b == '\n') {
+                    threadCount = 0;
+                    accepted += report(pending, threadCount, groups, lineNumber, listener);
+                    lineNumber++;
+                    position++;
+                    continue;
+                }
+
+                step++;
+                if (seedable && (threadCount == 0 || seen[initial] != step - 1)) {
+                    if (pending.isEmpty() || pending.peekLast().bestStart >= 0) {
+                        pending.addLast(new Group());
+                    }
+                    states[threadCount] = initial;
+                    starts[threadCount] = position;
+                    groups[threadCount++] = pending.peekLast();
+                }
+
+                int decoded = decode(windows, position, size);
+                int codePoint = decoded & ((1 << CODE_POINT_BITS) - 1);
+                position += decoded >>> CODE_POINT_BITS;
+                int first = classes.classOf(Character.isBmpCodePoint(codePoint)
+                        ? (char) codePoint : Character.highSurrogate(codePoint));
+                int second = Character.isBmpCodePoint(codePoint) ? -1 : classes.classOf(Character.lowSurrogate(codePoint));
+                int kept = 0;
+                int firstAccepting = -1;
+                for (int thread = 0; thread < threadCount; thread++) {
+                    int state = table[states[thread] * classCount + first];
+                    if (second >= 0 && state != CompiledAutomaton.DEAD) {
+                        state = table[state * classCount + second];
+                    }
+                    if (!dfa.isLive(state) || seen[state] == step) {
+                        continue;
+                    }
+                    seen[state] = step;
+                    states[kept] = state;
+                    starts[kept] = starts[thread];
+                    groups[kept] = groups[thread];
+                    if (firstAccepting < 0 && dfa.isAccepting(state)) {
+                        firstAccepting = kept;
+                    }
+                    kept++;
+                }
+                threadCount = kept;
+
+                if (firstAccepting >= 0) {
+                    Group group = groups[firstAccepting];
+                    group.bestStart = starts[firstAccepting];
+                    group.bestEnd = position;
+                    for (int thread = firstAccepting + 1; thread < threadCount; thread++) {
+                        seen[states[thread]] = 0;
+                    }
+                    threadCount = firstAccepting + 1;
+                    while (pending.peekLast() != group) {
+                        pending.removeLast();
+                    }
+                }
+                accepted += report(pending, threadCount, groups, lineNumber, listener);
+            }
+        }
+        return accepted;
+    }
+
+    // Reports and drops the leading groups none of whose threads is still alive
+    private static long report(ArrayDeque<Group> pending, int threadCount, Group[] groups, long lineNumber,
+                               SpanListener listener) {
+        long reported = 0;
+        while (!pending.isEmpty() && (threadCount == 0 || groups[0] != pending.peekFirst())) {
+            Group group = pending.removeFirst();
+            if (group.bestStart >= 0) {
+                listener.onSpan(lineNumber, group.bestStart, group.bestEnd);
+                reported++;
+            }
+        }
+        return reported;
+    }
+
+    private static void feed(StreamingMatcher matcher, int codePoint) {
+        if (Character.isBmpCodePoint(codePoint)) {
+            matcher.feed((char) codePoint);
+        } else {
+            matcher.feed(Character.highSurrogate(codePoint));
+            matcher.feed(Character.lowSurrogate(codePoint));
+        }
+    }
+
+    // The code point starting at the position, with its length in bytes above CODE_POINT_BITS; a malformed or
+    // overlong sequence decodes as one byte of U+FFFD
+    private static int decode(MappedByteBuffer[] windows, long position, long size) {
+        int lead = byteAt(windows, position) & 0xFF;
+        if (lead < 0x80) {
+            return 1 << CODE_POINT_BITS | lead;
+        }
+        int length = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+        if (length == 1 || lead > 0xF4 || position + length > size) {
+            return 1 << CODE_POINT_BITS | REPLACEMENT;
+        }
+        int codePoint = lead & (0x3F >> (length - 1));
+        for (int i = 1; i < length; i++) {
+            int next = byteAt(windows, position + i) & 0xFF;
+            if ((next & 0xC0) != 0x80) {
+                return 1 << CODE_POINT_BITS | REPLACEMENT;
+            }
+            codePoint = codePoint << 6 | (next & 0x3F);
+        }
+        int minimum = length == 2 ? 0x80 : length == 3 ? 0x800 : 0x10000;
+        if (codePoint < minimum || codePoint > Character.MAX_CODE_POINT
+                || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+            return 1 << CODE_POINT_BITS | REPLACEMENT;
+        }
+        return length << CODE_POINT_BITS | codePoint;
+    }
+
+    private static MappedByteBuffer[] map(FileChannel channel) throws IOException {
+        long size = channel.size();
+        MappedByteBuffer[] windows = new MappedByteBuffer[(int) ((size + WINDOW_SIZE - 1) >>> WINDOW_BITS)];
+        for (int i = 0; i < windows.length; i++) {
+            long offset = (long) i << WINDOW_BITS;
+            windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW_SIZE, size - offset));
+        }
+        return windows;
+    }
+
+    private static byte byteAt(MappedByteBuffer[] windows, long position) {
+        return windows[(int) (position >>> WINDOW_BITS)].get((int) (position & (WINDOW_SIZE - 1)));
+    }
+}
@@ -0,0 +1,5 @@
+package automaton;
+
+public interface Matcher {
+    boolean accepts(CharSequence word);
+}
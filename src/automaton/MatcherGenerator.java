@@ -0,0 +1,205 @@
+package automaton;
+
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Turns a deterministic automaton into a switch-based Matcher class that the JIT can inline completely
+public class MatcherGenerator {
+    // Estimated bytecode of the generated accepts method, which the JVM limits to 64KB: a state costs its outer
+    // case and inner switch, a case label its lookupswitch entry, a run of labels or a range check its branch
+    private static final int MAX_CODE_SIZE = 60000;
+    private static final int STATE_SIZE = 24;
+    private static final int LABEL_SIZE = 8;
+    private static final int BRANCH_SIZE = 8;
+    private static final int RANGE_SIZE = 24;
+    // Runs of consecutive characters at least this long are emitted as a range check instead of case labels
+    private static final int MIN_RANGE = 3;
+    private static final String PACKAGE = "automaton.generated";
+    private static final AtomicInteger CLASS_COUNTER = new AtomicInteger();
+
+    private final CompiledAutomaton dfa;
+
+    public MatcherGenerator(CompiledAutomaton dfa) {
+        if (!dfa.isDeterministic()) {
+            throw new IllegalArgumentException("Matcher generation requires a deterministic automaton");
+        }
+        this.dfa = dfa;
+        int size = 0;
+        for (int state = 0; state < dfa.getStateCount() && size <= MAX_CODE_SIZE; state++) {
+            size += STATE_SIZE + (dfa.isAccepting(state) ? LABEL_SIZE : 0);
+            int[] runs = runsOf(state);
+            for (int run = 0; run < runs.length; run += 3) {
+                int length = runs[run + 1] - runs[run] + 1;
+                size += length >= MIN_RANGE ? RANGE_SIZE : length * LABEL_SIZE + BRANCH_SIZE;
+            }
+        }
+        if (size > MAX_CODE_SIZE) {
+            throw new IllegalArgumentException("Automaton needs about " + size
+                    + " bytes of matcher code, generated matchers are limited to " + MAX_CODE_SIZE);
+        }
+    }
+
+    // Maximal runs of consecutive characters leading from the state to the same target, as (first, last,
+    // target) triples in character order
+    private int[] runsOf(int state) {
+        int classCount = dfa.getClassCount();
+        int[] table = dfa.getTable();
+        String[] symbols = dfa.getClasses().getSymbols();
+        char[] chars = new char[symbols.length];
+        int count = 0;
+        for (String symbol : symbols) {
+            char c = symbol.charAt(0);
+            if (table[state * classCount + dfa.getClasses().classOf(c)] != CompiledAutomaton.DEAD) {
+                chars[count++] = c;
+            }
+        }
+        Arrays.sort(chars, 0, count);
+        int[] runs = new int[count * 3];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int target = table[state * classCount + dfa.getClasses().classOf(chars[i])];
+            if (size > 0 && runs[size - 2] + 1 == chars[i] && runs[size - 1] == target) {
+                runs[size - 2] = chars[i];
+            } else {
+                runs[size++] = chars[i];
+                runs[size++] = chars[i];
+                runs[size++] = target;
+            }
+        }
+        return Arrays.copyOf(runs, size);
+    }
+
+    public String generateSource(String packageName, String className) {
+        int stateCount = dfa.getStateCount();
+
+        StringBuilder source = new StringBuilder();
+        if (packageName != null && !packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("public final class ").append(className).append(" implements automaton.Matcher {\n");
+        source.append("    @Override\n");
+        source.append("    public boolean accepts(CharSequence word) {\n");
+        source.append("        int state = ").append(dfa.getInitialState()).append(";\n");
+        source.append("        for (int i = 0, n = word.length(); i < n; i++) {\n");
+        source.append("            char c = word.charAt(i);\n");
+        source.append("            switch (state) {\n");
+        for (int state = 0; state < stateCount; state++) {
+            int[] runs = runsOf(state);
+            source.append("                case ").append(state).append(":\n");
+            if (runs.length == 0) {
+                source.append("                    return false;\n");
+                continue;
+            }
+            // Short runs become case labels, long ones (a wide class like [^x]) a single range check
+            StringBuilder ranges = new StringBuilder();
+            source.append("                    switch (c) {\n");
+            for (int run = 0; run < runs.length; run += 3) {
+                if (runs[run + 1] - runs[run] + 1 >= MIN_RANGE) {
+                    ranges.append("                            if (c >= ").append(runs[run])
+                            .append(" && c <= ").append(runs[run + 1]).append(") {\n");
+                    ranges.append("                                state = ").append(runs[run + 2]).append(";\n");
+                    ranges.append("                                break;\n");
+                    ranges.append("                            }\n");
+                    continue;
+                }
+                for (int c = runs[run]; c <= runs[run + 1]; c++) {
+                    source.append("                        case ").append(c).append(":\n");
+                }
+                source.append("                            state = ").append(runs[run + 2]).append(";\n");
+                source.append("                            break;\n");
+            }
+            source.append("                        default:\n");
+            source.append(ranges);
+            source.append("                            return false;\n");
+            source.append("                    }\n");
+            source.append("                    break;\n");
+        }
+        source.append("                default:\n");
+        source.append("                    return false;\n");
+        source.append("            }\n");
+        source.append("        }\n");
+        StringBuilder acceptingCases = new StringBuilder();
+        for (int state = 0; state < stateCount; state++) {
+            if (dfa.isAccepting(state)) {
+                acceptingCases.append("            case ").append(state).append(":\n");
+            }
+        }
+        if (acceptingCases.length() == 0) {
+            source.append("        return false;\n");
+        } else {
+            source.append("        switch (state) {\n");
+            source.append(acceptingCases);
+            source.append("                return true;\n");
+            source.append("            default:\n");
+            source.append("                return false;\n");
+            source.append("        }\n");
+        }
+        source.append("    }\n");
+        source.append("}\n");
+        return source.toString();
+    }
+
+    public Matcher compile() {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("No Java compiler available, matchers can only be generated on a JDK");
+        }
+
+        String className = "GeneratedMatcher" + CLASS_COUNTER.getAndIncrement();
+        String qualifiedName = PACKAGE + "." + className;
+        JavaFileObject source = new SimpleJavaFileObject(
+                URI.create("string:///" + qualifiedName.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return generateSource(PACKAGE, className);
+            }
+        };
+
+        Map<String, ByteArrayOutputStream> classes = new HashMap<>();
+        JavaFileManager fileManager = new ForwardingJavaFileManager<>(compiler.getStandardFileManager(null, null, null)) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String name, JavaFileObject.Kind kind,
+                                                       FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("bytes:///" + name.replace('.', '/') + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                        classes.put(name, bytes);
+                        return bytes;
+                    }
+                };
+            }
+        };
+
+        StringWriter errors = new StringWriter();
+        List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"));
+        boolean compiled = compiler.getTask(errors, fileManager, null, options, null,
+                Collections.singletonList(source)).call();
+        if (!compiled) {
+            throw new IllegalStateException("Generated matcher failed to compile: " + errors);
+        }
+
+        ClassLoader loader = new ClassLoader(Matcher.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                ByteArrayOutputStream bytes = classes.get(name);
+                if (bytes == null) {
+                    throw new ClassNotFoundException(name);
+                }
+                byte[] code = bytes.toByteArray();
+                return defineClass(name, code, 0, code.length);
+            }
+        };
+        try {
+            return (Matcher) loader.loadClass(qualifiedName).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Generated matcher could not be loaded", e);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package automaton;
+
+import java.util.*;
+
+class Minimization {
+    private final CompiledAutomaton dfa;
+    private final int classCount;
+
+    // Reachable states plus one explicit sink standing in for every missing transition
+    private int stateCount;
+    private int sink;
+    private int[] original;
+    private int[] delta;
+
+    // Partition refinement: block members are contiguous ranges of `elements`
+    private int[] elements;
+    private int[] location;
+    private int[] blockOf;
+    private int[] first;
+    private int[] past;
+    private int[] marked;
+    private int blockCount;
+
+    Minimization(CompiledAutomaton dfa) {
+        if (!dfa.isDeterministic()) {
+            throw new IllegalArgumentException("Minimization requires a deterministic automaton");
+        }
+        this.dfa = dfa;
+        this.classCount = dfa.getClassCount();
+    }
+
+    CompiledAutomaton minimize() {
+        collectReachable();
+        refine();
+        return buildQuotient();
+    }
+
+    private void collectReachable() {
+        int[] table = dfa.getTable();
+        int[] renamed = new int[dfa.getStateCount()];
+        Arrays.fill(renamed, -1);
+        original = new int[dfa.getStateCount()];
+        int count = 0;
+        renamed[dfa.getInitialState()] = count;
+        original[count++] = dfa.getInitialState();
+        for (int i = 0; i < count; i++) {
+            int state = original[i];
+            for (int classId = 0; classId < classCount; classId++) {
+                int target = table[state * classCount + classId];
+                if (target != CompiledAutomaton.DEAD && renamed[target] < 0) {
+                    renamed[target] = count;
+                    original[count++] = target;
+                }
+            }
+        }
+
+        stateCount = count + 1;
+        sink = count;
+        delta = new int[stateCount * classCount];
+        Arrays.fill(delta, sink);
+        for (int i = 0; i < count; i++) {
+            for (int classId = 0; classId < classCount; classId++) {
+                int target = table[original[i] * classCount + classId];
+                if (target != CompiledAutomaton.DEAD) {
+                    delta[i * classCount + classId] = renamed[target];
+                }
+            }
+        }
+    }
+
+    private boolean isAccepting(int state) {
+        return state != sink && dfa.isAccepting(original[state]);
+    }
+
+    private void refine() {
+        // Predecessors grouped by (target, class) in CSR form
+        int[] inverseOffsets = new int[stateCount * classCount + 1];
+        for (int slot = 0; slot < delta.length; slot++) {
+            inverseOffsets[delta[slot] * classCount + slot % classCount + 1]++;
+        }
+        for (int i = 1; i < inverseOffsets.length; i++) {
+            inverseOffsets[i] += inverseOffsets[i - 1];
+        }
+        int[] inverse = new int[delta.length];
+        int[] fill = Arrays.copyOf(inverseOffsets, inverseOffsets.length - 1);
+        for (int slot = 0; slot < delta.length; slot++) {
+            inverse[fill[delta[slot] * classCount + slot % classCount]++] = slot / classCount;
+        }
+
+        elements = new int[stateCount];
+        location = new int[stateCount];
+        blockOf = new int[stateCount];
+        first = new int[stateCount];
+        past = new int[stateCount];
+        marked = new int[stateCount];
+
+        // Initial partition: accepting states first, then the rest
+        int position = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            int start = position;
+            for (int state = 0; state < stateCount; state++) {
+                if (isAccepting(state) == (pass == 0)) {
+                    elements[position] = state;
+                    location[state] = position++;
+                    blockOf[state] = blockCount;
+                }
+            }
+            if (position > start) {
+                first[blockCount] = start;
+                past[blockCount++] = position;
+            }
+        }
+
+        boolean[] waiting = new boolean[stateCount * classCount];
+        ArrayDeque<Integer> worklist = new ArrayDeque<>();
+        for (int block = 0; block < blockCount; block++) {
+            for (int classId = 0; classId < classCount; classId++) {
+                waiting[block * classCount + classId] = true;
+                worklist.add(block * classCount + classId);
+            }
+        }
+
+        int[] splitter = new int[stateCount];
+        int[] touched = new int[stateCount];
+        while (!worklist.isEmpty()) {
+            int entry = worklist.poll();
+            waiting[entry] = false;
+            int block = entry / classCount;
+            int classId = entry % classCount;
+
+            // Copy the splitter out first, since marking moves states around inside their blocks
+            int size = past[block] - first[block];
+            System.arraycopy(elements, first[block], splitter, 0, size);
+
+            int touchedCount = 0;
+            for (int i = 0; i < size; i++) {
+                int slot = splitter[i] * classCount + classId;
+                for (int e = inverseOffsets[slot]; e < inverseOffsets[slot + 1]; e++) {
+                    int state = inverse[e];
+                    int b = blockOf[state];
+                    int boundary = first[b] + marked[b];
+                    if (location[state] >= boundary) {
+                        if (marked[b] == 0) {
+                            touched[touchedCount++] = b;
+                        }
+                        int other = elements[boundary];
+                        elements[boundary] = state;
+                        elements[location[state]] = other;
+                        location[other] = location[state];
+                        location[state] = boundary;
+                        marked[b]++;
+                    }
+                }
+            }
+
+            for (int t = 0; t < touchedCount; t++) {
+                int b = touched[t];
+                int split = first[b] + marked[b];
+                marked[b] = 0;
+                if (split == past[b]) {
+                    continue;
+                }
+
+                int created = blockCount++;
+                first[created] = first[b];
+                past[created] = split;
+                first[b] = split;
+                for (int i = first[created]; i < past[created]; i++) {
+                    blockOf[elements[i]] = created;
+                }
+
+                for (int c = 0; c < classCount; c++) {
+                    int smaller = past[created] - first[created] <= past[b] - first[b] ? created : b;
+                    int add = waiting[b * classCount + c] ? created : smaller;
+                    if (!waiting[add * classCount + c]) {
+                        waiting[add * classCount + c] = true;
+                        worklist.add(add * classCount + c);
+                    }
+                }
+            }
+        }
+    }
+
+    private CompiledAutomaton buildQuotient() {
+        // Number blocks breadth-first from the initial state, dropping the sink's block
+        int deadBlock = blockOf[sink];
+        int[] renamed = new int[blockCount];
+        Arrays.fill(renamed, -1);
+        int[] representative = new int[blockCount];
+        int count = 0;
+        if (blockOf[0] != deadBlock) {
+            renamed[blockOf[0]] = count;
+            representative[count++] = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            int state = representative[i];
+            for (int classId = 0; classId < classCount; classId++) {
+                int block = blockOf[delta[state * classCount + classId]];
+                if (block != deadBlock && renamed[block] < 0) {
+                    renamed[block] = count;
+                    representative[count++] = elements[first[block]];
+                }
+            }
+        }
+
+        if (count == 0) {
+            // The language is empty: keep a lone non-accepting initial state
+            return CompiledAutomaton.fromTable(new String[]{dfa.getStateName(dfa.getInitialState())},
+                    dfa.getClasses(), 0, new boolean[1], emptyTable(1));
+        }
+
+        String[] stateNames = new String[count];
+        boolean[] accepting = new boolean[count];
+        int[] table = emptyTable(count);
+        for (int i = 0; i < count; i++) {
+            int state = representative[i];
+            stateNames[i] = dfa.getStateName(original[lowestMember(blockOf[state])]);
+            accepting[i] = isAccepting(state);
+            for (int classId = 0; classId < classCount; classId++) {
+                int block = blockOf[delta[state * classCount + classId]];
+                if (block != deadBlock) {
+                    table[i * classCount + classId] = renamed[block];
+                }
+            }
+        }
+        return CompiledAutomaton.fromTable(stateNames, dfa.getClasses(), 0, accepting, table);
+    }
+
+    private int lowestMember(int block) {
+        int lowest = Integer.MAX_VALUE;
+        for (int i = first[block]; i < past[block]; i++) {
+            lowest = Math.min(lowest, elements[i]);
+        }
+        return lowest;
+    }
+
+    private int[] emptyTable(int states) {
+        int[] table = new int[states * classCount];
+        Arrays.fill(table, CompiledAutomaton.DEAD);
+        return table;
+    }
+}
@@ -0,0 +1,156 @@
+package automaton;
+
+import java.util.*;
+
+// Matches one input against many automata in a single pass over a lazily built product; not thread-safe
+public class MultiMatcher {
+    private static final int UNKNOWN = -2;
+
+    private final CompiledAutomaton[] parts;
+    private final int[] wordOffsets;
+    private final AlphabetClasses classes;
+    private final int classCount;
+    private final ProductAlphabet alphabet;
+    private final int maxStates;
+    private final long[] initial;
+
+    private final Map<StateSet, Integer> ids = new HashMap<>();
+    private final List<long[]> sets = new ArrayList<>();
+    private final List<long[]> tags = new ArrayList<>();
+    private int[] next;
+
+    private long cacheHits;
+    private long cacheMisses;
+    private long cacheFlushes;
+
+    public MultiMatcher(List<FiniteAutomaton> automata, int maxStates) {
+        if (maxStates < 3) {
+            throw new IllegalArgumentException("The cache must hold at least 3 states");
+        }
+        this.parts = new CompiledAutomaton[automata.size()];
+        this.wordOffsets = new int[parts.length + 1];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = automata.get(i).compile();
+            wordOffsets[i + 1] = wordOffsets[i] + parts[i].getWords();
+        }
+        this.maxStates = maxStates;
+
+        this.alphabet = new ProductAlphabet(parts);
+        this.classes = alphabet.getClasses();
+        this.classCount = alphabet.getClassCount();
+
+        this.initial = new long[wordOffsets[parts.length]];
+        for (int i = 0; i < parts.length; i++) {
+            long[] part = new long[parts[i].getWords()];
+            parts[i].initialSet(part);
+            parts[i].retainLive(part);
+            System.arraycopy(part, 0, initial, wordOffsets[i], part.length);
+        }
+        this.next = new int[Math.min(maxStates, 64) * classCount];
+        flush();
+    }
+
+    // Returns the indices of the automata that accept the word
+    public BitSet matches(CharSequence word) {
+        int state = 0;
+        for (int i = 0, n = word.length(); i < n; i++) {
+            int classId = classes.classOf(word.charAt(i));
+            int slot = state * classCount + classId;
+            int target = next[slot];
+            if (target == UNKNOWN) {
+                cacheMisses++;
+                if (sets.size() == maxStates) {
+                    long[] current = sets.get(state);
+                    flush();
+                    state = intern(current);
+                    slot = state * classCount + classId;
+                }
+                target = computeNext(state, classId);
+                next[slot] = target;
+            } else {
+                cacheHits++;
+            }
+            if (target == CompiledAutomaton.DEAD) {
+                return new BitSet();
+            }
+            state = target;
+        }
+        return BitSet.valueOf(tags.get(state));
+    }
+
+    private int computeNext(int state, int classId) {
+        long[] from = sets.get(state);
+        long[] successor = new long[from.length];
+        boolean any = false;
+        for (int i = 0; i < parts.length; i++) {
+            int localClass = alphabet.localClass(classId, i);
+            if (localClass == 0) {
+                continue;
+            }
+            long[] part = Arrays.copyOfRange(from, wordOffsets[i], wordOffsets[i + 1]);
+            long[] stepped = new long[part.length];
+            if (parts[i].step(part, localClass, stepped)) {
+                parts[i].retainLive(stepped);
+                System.arraycopy(stepped, 0, successor, wordOffsets[i], stepped.length);
+                any |= parts[i].isLive(stepped);
+            }
+        }
+        return any ? intern(successor) : CompiledAutomaton.DEAD;
+    }
+
+    private int intern(long[] set) {
+        StateSet key = new StateSet(set);
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        id = sets.size();
+        if ((id + 1) * classCount > next.length) {
+            int capacity = Math.min(maxStates, Math.max(id + 1, next.length / Math.max(classCount, 1) * 2));
+            int old = next.length;
+            next = Arrays.copyOf(next, capacity * classCount);
+            Arrays.fill(next, old, next.length, UNKNOWN);
+        }
+        long[] accepted = new long[(parts.length + 63) >>> 6];
+        for (int i = 0; i < parts.length; i++) {
+            if (parts[i].isAccepting(Arrays.copyOfRange(set, wordOffsets[i], wordOffsets[i + 1]))) {
+                accepted[i >>> 6] |= 1L << i;
+            }
+        }
+        ids.put(key, id);
+        sets.add(set);
+        tags.add(accepted);
+        return id;
+    }
+
+    private void flush() {
+        if (!sets.isEmpty()) {
+            cacheFlushes++;
+        }
+        ids.clear();
+        sets.clear();
+        tags.clear();
+        Arrays.fill(next, UNKNOWN);
+        intern(initial);
+    }
+
+    public int getAutomatonCount() {
+        return parts.length;
+    }
+
+    public int getCachedStateCount() {
+        return sets.size();
+    }
+
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    public long getCacheFlushes() {
+        return cacheFlushes;
+    }
+}
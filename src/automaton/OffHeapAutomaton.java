@@ -0,0 +1,169 @@
+package automaton;
+
+import java.util.*;
+
+// A deterministic automaton whose states and CSR-packed edges live outside the Java heap, for automata too
+// large to keep as objects; each edge is one long holding (class << 32 | target), sorted by class per state
+public class OffHeapAutomaton implements Matcher {
+    private static final int LINEAR_SCAN = 8;
+
+    private final AlphabetClasses classes;
+    private final int initialState;
+    private final int stateCount;
+    private final OffHeapLongArray acceptingBits;
+    private final OffHeapLongArray offsets;
+    private final OffHeapLongArray edges;
+
+    private OffHeapAutomaton(AlphabetClasses classes, int initialState, int stateCount,
+                             OffHeapLongArray acceptingBits, OffHeapLongArray offsets, OffHeapLongArray edges) {
+        if (initialState < 0 || initialState >= stateCount) {
+            throw new IllegalArgumentException("Initial state " + initialState + " is not one of the "
+                    + stateCount + " states");
+        }
+        this.classes = classes;
+        this.initialState = initialState;
+        this.stateCount = stateCount;
+        this.acceptingBits = acceptingBits;
+        this.offsets = offsets;
+        this.edges = edges;
+    }
+
+    public static OffHeapAutomaton of(CompiledAutomaton dfa) {
+        if (!dfa.isDeterministic()) {
+            throw new IllegalArgumentException("Only deterministic automata can be stored off-heap");
+        }
+        Builder builder = new Builder(dfa.getClasses());
+        int classCount = dfa.getClassCount();
+        int[] table = dfa.getTable();
+        for (int state = 0; state < dfa.getStateCount(); state++) {
+            builder.addState(dfa.isAccepting(state));
+            for (int classId = 1; classId < classCount; classId++) {
+                int target = table[state * classCount + classId];
+                if (target != CompiledAutomaton.DEAD) {
+                    builder.addEdge(classId, target);
+                }
+            }
+        }
+        return builder.build(dfa.getInitialState());
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    public long getEdgeCount() {
+        return edges.size();
+    }
+
+    @Override
+    public boolean accepts(CharSequence word) {
+        int state = initialState;
+        for (int i = 0, n = word.length(); i < n; i++) {
+            int classId = classes.classOf(word.charAt(i));
+            if (classId == 0) {
+                return false;
+            }
+            state = target(state, classId);
+            if (state == CompiledAutomaton.DEAD) {
+                return false;
+            }
+        }
+        return (acceptingBits.get(state >>> 6) & (1L << state)) != 0;
+    }
+
+    private int target(int state, int classId) {
+        long low = offsets.get(state);
+        long high = offsets.get(state + 1);
+        if (high - low <= LINEAR_SCAN) {
+            for (long e = low; e < high; e++) {
+                long edge = edges.get(e);
+                if ((int) (edge >>> 32) == classId) {
+                    return (int) edge;
+                }
+            }
+            return CompiledAutomaton.DEAD;
+        }
+        high--;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            long edge = edges.get(middle);
+            int edgeClass = (int) (edge >>> 32);
+            if (edgeClass < classId) {
+                low = middle + 1;
+            } else if (edgeClass > classId) {
+                high = middle - 1;
+            } else {
+                return (int) edge;
+            }
+        }
+        return CompiledAutomaton.DEAD;
+    }
+
+    // States are added in id order, each followed by its outgoing edges in alphabet order
+    public static class Builder {
+        private final AlphabetClasses classes;
+        private final OffHeapLongArray acceptingBits = new OffHeapLongArray();
+        private final OffHeapLongArray offsets = new OffHeapLongArray();
+        private final OffHeapLongArray edges = new OffHeapLongArray();
+        private int stateCount;
+        private int lastClass;
+
+        // Every symbol of the alphabet gets its own class
+        public Builder(String[] alphabet) {
+            this(AlphabetClasses.identity(alphabet));
+        }
+
+        Builder(AlphabetClasses classes) {
+            this.classes = classes;
+            offsets.append(0);
+        }
+
+        public void addState(boolean accepting) {
+            if (stateCount == Integer.MAX_VALUE) {
+                throw new IllegalStateException("Too many states");
+            }
+            int state = stateCount++;
+            if ((state & 63) == 0) {
+                acceptingBits.append(0);
+            }
+            if (accepting) {
+                acceptingBits.set(state >>> 6, acceptingBits.get(state >>> 6) | (1L << state));
+            }
+            offsets.append(edges.size());
+            lastClass = 0;
+        }
+
+        public void addEdge(char symbol, int target) {
+            int classId = classes.classOf(symbol);
+            if (classId == 0) {
+                throw new IllegalArgumentException("Symbol '" + symbol + "' is not in the alphabet");
+            }
+            addEdge(classId, target);
+        }
+
+        void addEdge(int classId, int target) {
+            if (stateCount == 0) {
+                throw new IllegalStateException("Add a state before its edges");
+            }
+            if (classId <= lastClass) {
+                throw new IllegalArgumentException("Edges must be added in alphabet order without repeats");
+            }
+            if (target < 0) {
+                throw new IllegalArgumentException("Invalid target state " + target);
+            }
+            edges.append(((long) classId << 32) | target);
+            offsets.set(stateCount, edges.size());
+            lastClass = classId;
+        }
+
+        public OffHeapAutomaton build(int initialState) {
+            for (long e = 0; e < edges.size(); e++) {
+                if ((int) edges.get(e) >= stateCount) {
+                    throw new IllegalArgumentException("Edge targets state " + (int) edges.get(e)
+                            + " but only " + stateCount + " states were added");
+                }
+            }
+            return new OffHeapAutomaton(classes, initialState, stateCount, acceptingBits, offsets, edges);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package automaton;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+// Append-only long array in direct buffers, paged so it can outgrow the 2 GB limit of a single buffer
+final class OffHeapLongArray {
+    private static final int PAGE_BITS = 27;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private LongBuffer[] pages = new LongBuffer[0];
+    private long size;
+
+    long get(long index) {
+        return pages[(int) (index >>> PAGE_BITS)].get((int) (index & PAGE_MASK));
+    }
+
+    void set(long index, long value) {
+        pages[(int) (index >>> PAGE_BITS)].put((int) (index & PAGE_MASK), value);
+    }
+
+    void append(long value) {
+        int page = (int) (size >>> PAGE_BITS);
+        int offset = (int) (size & PAGE_MASK);
+        if (page == pages.length) {
+            pages = Arrays.copyOf(pages, page + 1);
+            pages[page] = allocate(1024);
+        } else if (offset == pages[page].capacity()) {
+            // Only the last page grows, doubling until it reaches the full page size
+            LongBuffer grown = allocate(Math.min(PAGE_SIZE, offset * 2));
+            grown.put(pages[page].rewind());
+            pages[page] = grown;
+        }
+        pages[page].put(offset, value);
+        size++;
+    }
+
+    long size() {
+        return size;
+    }
+
+    private static LongBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+}
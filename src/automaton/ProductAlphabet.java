@@ -0,0 +1,64 @@
+package automaton;
+
+import java.nio.IntBuffer;
+import java.util.*;
+
+// Character classes for running several automata side by side: a class is a vector of per-automaton classes
+final class ProductAlphabet {
+    private final int partCount;
+    private final AlphabetClasses classes;
+    private final int classCount;
+    private final int[] localClasses;
+
+    ProductAlphabet(CompiledAutomaton[] parts) {
+        this.partCount = parts.length;
+        Map<Character, int[]> vectors = new LinkedHashMap<>();
+        for (CompiledAutomaton part : parts) {
+            for (String symbol : part.getClasses().getSymbols()) {
+                char c = symbol.charAt(0);
+                if (!vectors.containsKey(c)) {
+                    int[] vector = new int[partCount];
+                    for (int i = 0; i < partCount; i++) {
+                        vector[i] = parts[i].getClasses().classOf(c);
+                    }
+                    vectors.put(c, vector);
+                }
+            }
+        }
+
+        Map<IntBuffer, Integer> classIds = new HashMap<>();
+        List<int[]> classVectors = new ArrayList<>();
+        classVectors.add(new int[partCount]);
+        classIds.put(IntBuffer.wrap(classVectors.get(0)), 0);
+        String[] symbols = new String[vectors.size()];
+        int[] classOfSymbol = new int[vectors.size()];
+        int symbol = 0;
+        for (Map.Entry<Character, int[]> entry : vectors.entrySet()) {
+            Integer classId = classIds.putIfAbsent(IntBuffer.wrap(entry.getValue()), classVectors.size());
+            if (classId == null) {
+                classId = classVectors.size();
+                classVectors.add(entry.getValue());
+            }
+            symbols[symbol] = String.valueOf(entry.getKey());
+            classOfSymbol[symbol++] = classId;
+        }
+        this.classCount = classVectors.size();
+        this.classes = new AlphabetClasses(symbols, classOfSymbol, classCount);
+        this.localClasses = new int[classCount * partCount];
+        for (int classId = 0; classId < classCount; classId++) {
+            System.arraycopy(classVectors.get(classId), 0, localClasses, classId * partCount, partCount);
+        }
+    }
+
+    AlphabetClasses getClasses() {
+        return classes;
+    }
+
+    int getClassCount() {
+        return classCount;
+    }
+
+    int localClass(int classId, int part) {
+        return localClasses[classId * partCount + part];
+    }
+}
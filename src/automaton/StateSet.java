@@ -0,0 +1,27 @@
+package automaton;
+
+import java.util.Arrays;
+
+final class StateSet {
+    private final long[] bits;
+    private final int hash;
+
+    StateSet(long[] bits) {
+        this.bits = bits;
+        this.hash = Arrays.hashCode(bits);
+    }
+
+    long[] getBits() {
+        return bits;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof StateSet && hash == ((StateSet) o).hash && Arrays.equals(bits, ((StateSet) o).bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,81 @@
+package automaton;
+
+import java.nio.CharBuffer;
+
+// Resumable matcher fed one character or buffer at a time; instances are not thread-safe
+public class StreamingMatcher {
+    private final CompiledAutomaton automaton;
+    private final AlphabetClasses classes;
+    private final int[] table;
+    private final int classCount;
+
+    private int state;
+    private long[] current;
+    private long[] next;
+    private boolean dead;
+
+    public StreamingMatcher(CompiledAutomaton automaton) {
+        this.automaton = automaton;
+        this.classes = automaton.getClasses();
+        this.table = automaton.getTable();
+        this.classCount = automaton.getClassCount();
+        if (table == null) {
+            this.current = new long[automaton.getWords()];
+            this.next = new long[automaton.getWords()];
+        }
+        reset();
+    }
+
+    public void reset() {
+        if (table != null) {
+            state = automaton.getInitialState();
+            dead = !automaton.isLive(state);
+        } else {
+            automaton.initialSet(current);
+            dead = !automaton.isLive(current);
+        }
+    }
+
+    // Returns false once no continuation of the input can be accepted any more
+    public boolean feed(char c) {
+        if (dead) {
+            return false;
+        }
+        int classId = classes.classOf(c);
+        if (table != null) {
+            state = table[state * classCount + classId];
+            dead = !automaton.isLive(state);
+        } else {
+            long[] swap = current;
+            current = next;
+            next = swap;
+            dead = !automaton.step(next, classId, current) || !automaton.isLive(current);
+        }
+        return !dead;
+    }
+
+    // Consumes the buffer up to the point where the matcher dies, leaving the rest unread
+    public boolean feed(CharBuffer buffer) {
+        while (buffer.hasRemaining()) {
+            if (!feed(buffer.get())) {
+                return false;
+            }
+        }
+        return !dead;
+    }
+
+    public boolean isAccepting() {
+        if (dead) {
+            return false;
+        }
+        return table != null ? automaton.isAccepting(state) : automaton.isAccepting(current);
+    }
+
+    public boolean isRejecting() {
+        return !isAccepting();
+    }
+
+    public boolean isDead() {
+        return dead;
+    }
+}
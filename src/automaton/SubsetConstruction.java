@@ -0,0 +1,173 @@
+package automaton;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+class SubsetConstruction {
+    private static final int PARALLEL_FRONTIER = 16;
+
+    private final CompiledAutomaton nfa;
+    private final int classCount;
+    private final Map<StateSet, Integer> ids = new HashMap<>();
+    private final List<long[]> sets = new ArrayList<>();
+    private int[] table = new int[64];
+
+    SubsetConstruction(CompiledAutomaton nfa) {
+        this.nfa = nfa;
+        this.classCount = nfa.getClassCount();
+    }
+
+    // Only subsets reachable from the initial closure are ever created, in breadth-first order
+    CompiledAutomaton determinize() {
+        if (nfa.isDeterministic()) {
+            return nfa;
+        }
+
+        long[] initial = new long[nfa.getWords()];
+        nfa.initialSet(initial);
+        intern(initial);
+
+        long[] next = new long[nfa.getWords()];
+        for (int current = 0; current < sets.size(); current++) {
+            long[] from = sets.get(current);
+            for (int classId = 0; classId < classCount; classId++) {
+                int target = CompiledAutomaton.DEAD;
+                if (nfa.step(from, classId, next)) {
+                    target = intern(next);
+                    if (target == sets.size() - 1) {
+                        next = new long[nfa.getWords()];
+                    }
+                }
+                setTarget(current * classCount + classId, target);
+            }
+        }
+        return build();
+    }
+
+    // Expands each breadth-first level on the fork-join pool, then renumbers states as determinize() would
+    CompiledAutomaton determinizeParallel() {
+        if (nfa.isDeterministic()) {
+            return nfa;
+        }
+
+        ConcurrentHashMap<StateSet, Integer> provisionalIds = new ConcurrentHashMap<>();
+        AtomicInteger nextId = new AtomicInteger();
+        List<long[]> provisionalSets = new ArrayList<>();
+        List<int[]> rows = new ArrayList<>();
+
+        long[] initial = new long[nfa.getWords()];
+        nfa.initialSet(initial);
+        provisionalIds.put(new StateSet(initial), nextId.getAndIncrement());
+        provisionalSets.add(initial);
+        rows.add(null);
+
+        int[] frontier = {0};
+        while (frontier.length > 0) {
+            ConcurrentLinkedQueue<Map.Entry<Integer, long[]>> created = new ConcurrentLinkedQueue<>();
+            int[] level = frontier;
+            IntStream indices = IntStream.range(0, level.length);
+            if (level.length >= PARALLEL_FRONTIER) {
+                indices = indices.parallel();
+            }
+            int[][] levelRows = indices
+                    .mapToObj(i -> expand(provisionalSets.get(level[i]), provisionalIds, nextId, created))
+                    .toArray(int[][]::new);
+            for (int i = 0; i < level.length; i++) {
+                rows.set(level[i], levelRows[i]);
+            }
+
+            for (int i = provisionalSets.size(); i < nextId.get(); i++) {
+                provisionalSets.add(null);
+                rows.add(null);
+            }
+            frontier = new int[created.size()];
+            int count = 0;
+            for (Map.Entry<Integer, long[]> entry : created) {
+                provisionalSets.set(entry.getKey(), entry.getValue());
+                frontier[count++] = entry.getKey();
+            }
+            Arrays.sort(frontier);
+        }
+
+        // Canonical breadth-first numbering, independent of how the workers raced
+        int[] renamed = new int[provisionalSets.size()];
+        Arrays.fill(renamed, -1);
+        int[] order = new int[provisionalSets.size()];
+        int count = 0;
+        renamed[0] = count;
+        order[count++] = 0;
+        for (int i = 0; i < count; i++) {
+            int[] row = rows.get(order[i]);
+            sets.add(provisionalSets.get(order[i]));
+            for (int classId = 0; classId < classCount; classId++) {
+                int target = row[classId];
+                if (target != CompiledAutomaton.DEAD && renamed[target] < 0) {
+                    renamed[target] = count;
+                    order[count++] = target;
+                }
+                setTarget(i * classCount + classId, target == CompiledAutomaton.DEAD ? target : renamed[target]);
+            }
+        }
+        return build();
+    }
+
+    private int[] expand(long[] from, ConcurrentHashMap<StateSet, Integer> provisionalIds, AtomicInteger nextId,
+                         ConcurrentLinkedQueue<Map.Entry<Integer, long[]>> created) {
+        int[] row = new int[classCount];
+        for (int classId = 0; classId < classCount; classId++) {
+            long[] next = new long[nfa.getWords()];
+            if (!nfa.step(from, classId, next)) {
+                row[classId] = CompiledAutomaton.DEAD;
+                continue;
+            }
+            row[classId] = provisionalIds.computeIfAbsent(new StateSet(next), key -> {
+                int id = nextId.getAndIncrement();
+                created.add(new AbstractMap.SimpleImmutableEntry<>(id, next));
+                return id;
+            });
+        }
+        return row;
+    }
+
+    private CompiledAutomaton build() {
+        int stateCount = sets.size();
+        String[] stateNames = new String[stateCount];
+        boolean[] accepting = new boolean[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            stateNames[state] = nameOf(sets.get(state));
+            accepting[state] = nfa.isAccepting(sets.get(state));
+        }
+        return CompiledAutomaton.fromTable(stateNames, nfa.getClasses(), 0, accepting,
+                Arrays.copyOf(table, stateCount * classCount));
+    }
+
+    private int intern(long[] set) {
+        StateSet key = new StateSet(set);
+        Integer id = ids.get(key);
+        if (id == null) {
+            id = sets.size();
+            ids.put(key, id);
+            sets.add(set);
+        }
+        return id;
+    }
+
+    private void setTarget(int slot, int target) {
+        if (slot >= table.length) {
+            table = Arrays.copyOf(table, Math.max(slot + 1, table.length * 2));
+        }
+        table[slot] = target;
+    }
+
+    private String nameOf(long[] set) {
+        StringJoiner name = new StringJoiner(", ", "[", "]");
+        for (int state = CompiledAutomaton.nextMember(set, 0); state >= 0;
+             state = CompiledAutomaton.nextMember(set, state + 1)) {
+            name.add(nfa.getStateName(state));
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,152 @@
+package automaton;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Draws accepted words of one exact length uniformly at random by walking precomputed suffix counts,
+// so every draw succeeds on the first try
+public class WordSampler {
+    private final CompiledAutomaton dfa;
+    private final int length;
+    private final int stateCount;
+    private final int classCount;
+    private final char[][] members;
+    private final int[] table;
+    // counts[k * stateCount + s] is the number of words of length k accepted from state s
+    private final long[] counts;
+    private final SplittableRandom random;
+
+    public WordSampler(CompiledAutomaton dfa, int length) {
+        this(dfa, length, new SplittableRandom());
+    }
+
+    public WordSampler(CompiledAutomaton dfa, int length, SplittableRandom random) {
+        if (!dfa.isDeterministic()) {
+            throw new IllegalArgumentException("Sampling requires a deterministic automaton");
+        }
+        if (length < 0) {
+            throw new IllegalArgumentException("Length must not be negative: " + length);
+        }
+        this.dfa = dfa;
+        this.length = length;
+        this.stateCount = dfa.getStateCount();
+        this.classCount = dfa.getClassCount();
+        this.members = members(dfa);
+        this.table = dfa.getTable();
+        this.random = random;
+        this.counts = new long[(length + 1) * stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            counts[state] = dfa.isAccepting(state) ? 1 : 0;
+        }
+        try {
+            for (int k = 1; k <= length; k++) {
+                int previous = (k - 1) * stateCount;
+                for (int state = 0; state < stateCount; state++) {
+                    long count = 0;
+                    for (int classId = 1; classId < classCount; classId++) {
+                        int target = table[state * classCount + classId];
+                        if (target != CompiledAutomaton.DEAD) {
+                            count = Math.addExact(count,
+                                    Math.multiplyExact((long) members[classId].length, counts[previous + target]));
+                        }
+                    }
+                    counts[k * stateCount + state] = count;
+                }
+            }
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Too many accepted words of length " + length
+                    + " to sample with long counts", e);
+        }
+    }
+
+    // Exact number of accepted words of every length up to maxLength, without overflow
+    static BigInteger[] countByLength(CompiledAutomaton dfa, int maxLength) {
+        if (!dfa.isDeterministic()) {
+            throw new IllegalArgumentException("Counting requires a deterministic automaton");
+        }
+        int stateCount = dfa.getStateCount();
+        int classCount = dfa.getClassCount();
+        int[] table = dfa.getTable();
+        char[][] members = members(dfa);
+
+        // Forward propagation from the initial state: paths[s] counts words of the current length ending in s
+        BigInteger[] paths = new BigInteger[stateCount];
+        Arrays.fill(paths, BigInteger.ZERO);
+        paths[dfa.getInitialState()] = BigInteger.ONE;
+        BigInteger[] result = new BigInteger[maxLength + 1];
+        for (int k = 0; k <= maxLength; k++) {
+            BigInteger accepted = BigInteger.ZERO;
+            for (int state = 0; state < stateCount; state++) {
+                if (dfa.isAccepting(state)) {
+                    accepted = accepted.add(paths[state]);
+                }
+            }
+            result[k] = accepted;
+            if (k == maxLength) {
+                break;
+            }
+            BigInteger[] next = new BigInteger[stateCount];
+            Arrays.fill(next, BigInteger.ZERO);
+            for (int state = 0; state < stateCount; state++) {
+                if (paths[state].signum() == 0) {
+                    continue;
+                }
+                for (int classId = 1; classId < classCount; classId++) {
+                    int target = table[state * classCount + classId];
+                    if (target != CompiledAutomaton.DEAD) {
+                        next[target] = next[target].add(paths[state].multiply(BigInteger.valueOf(members[classId].length)));
+                    }
+                }
+            }
+            paths = next;
+        }
+        return result;
+    }
+
+    private static char[][] members(CompiledAutomaton dfa) {
+        char[][] members = new char[dfa.getClassCount()][];
+        members[0] = new char[0];
+        for (int classId = 1; classId < members.length; classId++) {
+            members[classId] = dfa.getClasses().membersOf(classId);
+        }
+        return members;
+    }
+
+    public long getCount() {
+        return counts[length * stateCount + dfa.getInitialState()];
+    }
+
+    public String next() {
+        return next(random);
+    }
+
+    public String next(SplittableRandom random) {
+        int state = dfa.getInitialState();
+        long total = counts[length * stateCount + state];
+        if (total == 0) {
+            throw new IllegalStateException("No accepted words of length " + length);
+        }
+        char[] word = new char[length];
+        long rank = random.nextLong(total);
+        for (int k = length; k > 0; k--) {
+            int previous = (k - 1) * stateCount;
+            for (int classId = 1; classId < classCount; classId++) {
+                int target = table[state * classCount + classId];
+                if (target == CompiledAutomaton.DEAD) {
+                    continue;
+                }
+                long each = counts[previous + target];
+                long weight = each * members[classId].length;
+                if (rank < weight) {
+                    word[length - k] = members[classId][(int) (rank / each)];
+                    rank %= each;
+                    state = target;
+                    break;
+                }
+                rank -= weight;
+            }
+        }
+        return new String(word);
+    }
+}
@@ -1,300 +1,432 @@
 package grammar;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
+// Each converter owns the state of one conversion, so separate conversions can run on separate threads
 public class ChomskyNormalFormConverter {
-    private static ConvertedGrammar grammar;
-    private static HashMap<String, ArrayList<String>> newProductions = new HashMap<>();
-    private static HashMap<String, String> newProdLookUp = new HashMap<>();
-    private static int count = 0;
+    // Right-hand sides over SymbolTable codes, indexed by non-terminal; null once a non-terminal is removed
+    private final SymbolTable symbols;
+    private final List<List<int[]>> productions = new ArrayList<>();
+    private int startSymbol;
+    private final Map<Long, Integer> newProdLookUp = new HashMap<>();
+    private final Map<Phase, Integer> phaseSizes = new EnumMap<>(Phase.class);
+    // The phases rewrite the productions in place, so a converter runs a single conversion, convert or
+    // convertBounded
+    private boolean consumed;
+
+    public enum Phase {
+        INPUT, START, TERM, BIN, DEL, UNIT, USELESS
+    }
 
     public ChomskyNormalFormConverter(Grammar grammar) {
-        ConvertedGrammar convertedGrammar = grammar.convertToConvertedGrammar();
-        this.grammar =  convertedGrammar;
+        IndexedGrammar indexed = grammar.toIndexedGrammar();
+        if (!indexed.isContextFree()) {
+            throw new IllegalArgumentException("Only context-free grammars have a Chomsky normal form");
+        }
+        this.symbols = new SymbolTable(indexed.getSymbols());
+        this.startSymbol = indexed.getStartSymbol();
+        for (int nonTerminal = 0; nonTerminal < symbols.getNonTerminalCount(); nonTerminal++) {
+            List<int[]> rightSides = new ArrayList<>();
+            for (int p = indexed.getFirstProduction(nonTerminal); p < indexed.getEndProduction(nonTerminal); p++) {
+                rightSides.add(indexed.getRightSide(p).clone());
+            }
+            productions.add(rightSides);
+        }
     }
 
+    public static Grammar convert(Grammar grammar) {
+        return new ChomskyNormalFormConverter(grammar).convert();
+    }
+
+    public Grammar convert() {
+        consume();
+        removeEpsilonProductions();
+        removeUnitProductions();
+        removeInaccessibleProduction();
+        convertToChomskyNormalForm();
+        return toGrammar();
+    }
 
-    public void removeEpsilonProductions() {
-        Set<String> emptyProductions = new HashSet<>();
+    // Binarizes before removing ε, so no right-hand side has more than two nullable symbols when they are
+    // dropped. With balanced grouping, BIN and DEL stay within O(n log n) of the input size; UNIT closes every
+    // non-terminal over its unit chains and can still reach |N|·|P|. Use the instance method to read the sizes
+    public static Grammar convertBounded(Grammar grammar) {
+        return new ChomskyNormalFormConverter(grammar).convertBounded();
+    }
 
-        // Find all empty productions and remove them from the original productions
-        for (String left : this.grammar.getProductions().keySet()) {
-            List<String> productions = this.grammar.getProductions().get(left);
-            if (productions.remove("ε")) {
-                emptyProductions.add(left);
-            }
+    public Grammar convertBounded() {
+        consume();
+        phaseSizes.put(Phase.INPUT, size());
+        addStartSymbol();
+        phaseSizes.put(Phase.START, size());
+        replaceTerminals();
+        phaseSizes.put(Phase.TERM, size());
+        binarize(true);
+        phaseSizes.put(Phase.BIN, size());
+        removeEpsilonProductions();
+        phaseSizes.put(Phase.DEL, size());
+        removeUnitProductions();
+        phaseSizes.put(Phase.UNIT, size());
+        removeInaccessibleProduction();
+        phaseSizes.put(Phase.USELESS, size());
+        return toGrammar();
+    }
+
+    private void consume() {
+        if (consumed) {
+            throw new IllegalStateException("This converter has already run a conversion");
         }
+        consumed = true;
+    }
+
+    // Grammar size after each phase of convertBounded, counted as the sum of (1 + |right side|) over productions
+    public Map<Phase, Integer> getPhaseSizes() {
+        return Collections.unmodifiableMap(phaseSizes);
+    }
 
-        // Find all non-terminal symbols with at least one occurrence of an empty production
-        Set<String> nullableSymbols = new HashSet<>();
-        for (String left : grammar.getProductions().keySet()) {
-            List<String> productions = grammar.getProductions().get(left);
-            for (String production : productions) {
-                if (emptyProductions.stream().anyMatch(production::contains)) {
-                    nullableSymbols.add(left);
-                    break;
+    private int size() {
+        int size = 0;
+        for (List<int[]> rightSides : productions) {
+            if (rightSides != null) {
+                for (int[] rhs : rightSides) {
+                    size += 1 + rhs.length;
                 }
             }
         }
+        return size;
+    }
 
-        // Replace all occurrences of empty productions with all possible combinations of non-empty productions
-        for (String emptyProduction : emptyProductions) {
-            for (String left : nullableSymbols) {
-                List<String> productions = grammar.getProductions().get(left);
-                List<String> newProductions = new ArrayList<>();
-                for (int i = 0; i < productions.size(); i++) {
-                    String production = productions.get(i);
-                    if (production.contains(emptyProduction)) {
-                        productions.remove(i);
-                        i--;
-                        newProductions.addAll(generateProductions(production, emptyProduction));
-                    }
-                }
-                productions.addAll(newProductions);
-            }
+    // A new start symbol keeps the old one off every right-hand side
+    private void addStartSymbol() {
+        if (occursOnRightSide(startSymbol)) {
+            int newStart = generateNewNonTerminal(symbols.getName(startSymbol));
+            productions.get(newStart).add(new int[]{startSymbol});
+            startSymbol = newStart;
         }
     }
 
+    // Converts every grammar on the common fork-join pool, keeping the input order
+    public static List<Grammar> convertAll(List<Grammar> grammars) {
+        return grammars.parallelStream().map(ChomskyNormalFormConverter::convert).collect(Collectors.toList());
+    }
+
+    public static List<Grammar> convertAll(List<Grammar> grammars, ForkJoinPool pool) {
+        return pool.submit(() -> convertAll(grammars)).join();
+    }
 
-    public static List<String> generateProductions(String production, String nullableSymbol) {
-        List<String> newProductions = new ArrayList<>();
-        List<Integer> nullablePositions = new ArrayList<>();
+    private void removeEpsilonProductions() {
+        GrammarAnalysis analysis = new GrammarAnalysis(toIndexedGrammar());
 
-        // Find all positions of the nullable symbol in the production
-        for (int i = 0; i < production.length(); i++) {
-            if (nullableSymbol.charAt(0) == production.charAt(i)) {
-                nullablePositions.add(i);
+        // Replace every right-hand side with all the ways of dropping nullable symbols from it, except ε itself
+        for (int left = 0; left < productions.size(); left++) {
+            List<int[]> rightSides = productions.get(left);
+            if (rightSides == null) {
+                continue;
+            }
+            Set<RightSide> newProductions = new LinkedHashSet<>();
+            for (int[] rhs : rightSides) {
+                generateProductions(rhs, analysis, newProductions);
+            }
+            rightSides.clear();
+            for (RightSide rhs : newProductions) {
+                rightSides.add(rhs.symbols);
             }
         }
 
-        // Generate all combinations of positions to remove the nullable symbol
-        List<List<Integer>> positionCombinations = generateCombinations((ArrayList<Integer>) nullablePositions);
-        for (List<Integer> positions : positionCombinations) {
-            newProductions.add(removeCharsAtPositions(production, positions));
+        // A nullable start symbol keeps ε, through a new start symbol if the old one occurs on a right side
+        if (analysis.isNullable(startSymbol)) {
+            addStartSymbol();
+            productions.get(startSymbol).add(new int[0]);
         }
-
-        // Add the original production to the new productions list
-        newProductions.add(production);
-        return newProductions;
     }
 
-
-    private static List<List<Integer>> generateCombinations(ArrayList<Integer> nums) {
-        List<List<Integer>> result = new ArrayList<>();
-        backtrack(result, new ArrayList<>(), nums, 0);
-        return result;
+    private boolean occursOnRightSide(int nonTerminal) {
+        for (List<int[]> rightSides : productions) {
+            if (rightSides != null) {
+                for (int[] rhs : rightSides) {
+                    if (indexOf(rhs, nonTerminal) >= 0) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
     }
 
-
-    private static void backtrack(List<List<Integer>> result, List<Integer> tempList, ArrayList<Integer> nums, int start) {
-        if (tempList.size() > 0) {
-            result.add(new ArrayList<>(tempList));
-        }
-        for (int i = start; i < nums.size(); i++) {
-            tempList.add(nums.get(i));
-            backtrack(result, tempList, nums, i + 1);
-            tempList.remove(tempList.size() - 1);
+    private static int indexOf(int[] rhs, int symbol) {
+        for (int i = 0; i < rhs.length; i++) {
+            if (rhs[i] == symbol) {
+                return i;
+            }
         }
+        return -1;
     }
 
+    // Every way of dropping a subset of the nullable occurrences, the original included and ε left out
+    private static void generateProductions(int[] production, GrammarAnalysis analysis, Set<RightSide> newProductions) {
+        int[] positions = new int[production.length];
+        int positionCount = 0;
+        for (int i = 0; i < production.length; i++) {
+            if (!SymbolTable.isTerminal(production[i]) && analysis.isNullable(production[i])) {
+                positions[positionCount++] = i;
+            }
+        }
+        if (positionCount >= Long.SIZE - 1) {
+            throw new IllegalArgumentException("Too many nullable symbols in one right-hand side: " + positionCount
+                    + "; convertBounded avoids this");
+        }
 
-    private static String removeCharsAtPositions(String inputString, List<Integer> positions) {
-        StringBuilder stringBuilder = new StringBuilder(inputString);
-        Collections.sort(positions, Collections.reverseOrder());
-        for (int position : positions) {
-            stringBuilder.deleteCharAt(position);
+        for (long mask = 0; mask < 1L << positionCount; mask++) {
+            int[] shorter = new int[production.length - Long.bitCount(mask)];
+            if (shorter.length == 0) {
+                continue;
+            }
+            int length = 0;
+            int next = 0;
+            for (int i = 0; i < production.length; i++) {
+                if (next < positionCount && positions[next] == i) {
+                    if ((mask & (1L << next++)) != 0) {
+                        continue;
+                    }
+                }
+                shorter[length++] = production[i];
+            }
+            newProductions.add(new RightSide(shorter));
         }
-        return stringBuilder.toString();
     }
 
-
+    // A -> B is replaced by the non-unit productions of every non-terminal that A reaches through unit chains
     private void removeUnitProductions() {
-        for (String key : grammar.getProductions().keySet()) {
-            ArrayList<String> prodList = grammar.getProductions().get(key);
-            ArrayList<String> newProdList = new ArrayList<>(); // New list to hold CNF converted productions
-            for (String prod : prodList) {
-                if (prod.length() == 1 && Character.isUpperCase(prod.charAt(0))) { // check when we have unit A -> B
-                    ArrayList<String> unitProdList = grammar.getProductions().get(prod); // get productions corresponding to B
-                    for (String unitProd : unitProdList) {
-                        // If the unit production is of length 1 and contains an uppercase symbol, it needs further conversion
-                        if (unitProd.length() == 1 && Character.isUpperCase(unitProd.charAt(0))) {
-                            ArrayList<String> unitProdList2 = grammar.getProductions().get(unitProd); // get productions corresponding to the uppercase symbol in B
-                            for (String unitProd2 : unitProdList2) {
-                                String newProd = unitProd2; // new production in CNF format
-                                newProdList.add(newProd);
-                            }
-                        } else {
-                            newProdList.add(unitProd); // add the unit production directly to the new production list
-                        }
+        List<List<int[]>> newProductions = new ArrayList<>();
+        boolean[] visited = new boolean[productions.size()];
+        int[] stack = new int[productions.size()];
+        for (int key = 0; key < productions.size(); key++) {
+            if (productions.get(key) == null) {
+                newProductions.add(null);
+                continue;
+            }
+            Arrays.fill(visited, false);
+            Set<RightSide> newProdList = new LinkedHashSet<>();
+            int size = 0;
+            visited[key] = true;
+            stack[size++] = key;
+            while (size > 0) {
+                for (int[] prod : productionsOf(stack[--size])) {
+                    if (!isUnit(prod)) {
+                        newProdList.add(new RightSide(prod));
+                    } else if (!visited[prod[0]]) {
+                        visited[prod[0]] = true;
+                        stack[size++] = prod[0];
                     }
-                } else {
-                    newProdList.add(prod); // add the original production directly to the new production list
                 }
             }
-            grammar.getProductions().put(key, newProdList); // update the production list for the current symbol
+            List<int[]> prodList = new ArrayList<>();
+            for (RightSide prod : newProdList) {
+                prodList.add(prod.symbols);
+            }
+            newProductions.add(prodList);
+        }
+        for (int key = 0; key < productions.size(); key++) {
+            productions.set(key, newProductions.get(key));
         }
     }
 
+    private static boolean isUnit(int[] rhs) {
+        return rhs.length == 1 && !SymbolTable.isTerminal(rhs[0]);
+    }
 
-    public void removeInaccessibleProduction() {
-        // Get the start symbol
-        String startSymbol = grammar.getInitialSymbol();
-
-        // Initialize the set of reachable symbols with the start symbol
-        Set<String> reachableSymbols = new HashSet<>();
-        reachableSymbols.add(startSymbol);
+    private List<int[]> productionsOf(int nonTerminal) {
+        List<int[]> rightSides = nonTerminal < productions.size() ? productions.get(nonTerminal) : null;
+        return rightSides == null ? Collections.emptyList() : rightSides;
+    }
 
-        // Use a queue to perform breadth-first search to find reachable symbols
-        Queue<String> queue = new LinkedList<>();
-        queue.add(startSymbol);
+    // Drops every non-terminal that is unreachable or derives no terminal word, with the productions using it
+    private void removeInaccessibleProduction() {
+        GrammarAnalysis analysis = new GrammarAnalysis(toIndexedGrammar());
+        for (int left = 0; left < productions.size(); left++) {
+            List<int[]> rightSides = productions.get(left);
+            if (rightSides == null) {
+                continue;
+            }
+            if (!analysis.isUseful(left)) {
+                // The start symbol stays, without productions, when the language is empty
+                productions.set(left, left == startSymbol ? new ArrayList<>() : null);
+                continue;
+            }
+            rightSides.removeIf(rhs -> !allUseful(rhs, analysis));
+        }
+    }
 
-        // Perform breadth-first search
-        while (!queue.isEmpty()) {
-            String symbol = queue.poll();
-            List<String> productions = grammar.getProductions().get(symbol);
-            if (productions != null) {
-                for (String production : productions) {
-                    String[] symbols = production.split("\\s+");
-                    for (String sym : symbols) {
-                        if (!reachableSymbols.contains(sym)) {
-                            reachableSymbols.add(sym);
-                            queue.add(sym);
-                        }
-                    }
-                }
+    private static boolean allUseful(int[] rhs, GrammarAnalysis analysis) {
+        for (int symbol : rhs) {
+            if (!SymbolTable.isTerminal(symbol) && !analysis.isUseful(symbol)) {
+                return false;
             }
         }
+        return true;
+    }
 
-        // Remove inaccessible productions
-        for (Iterator<Map.Entry<String, ArrayList<String>>> iterator = grammar.getProductions().entrySet().iterator(); iterator.hasNext();) {
-            Map.Entry<String, ArrayList<String>> entry = iterator.next();
-            if (!reachableSymbols.contains(entry.getKey())) {
-                iterator.remove(); // Use the iterator's remove() method
-            } else {
-                List<String> productions = entry.getValue();
-                for (Iterator<String> prodIterator = productions.iterator(); prodIterator.hasNext();) {
-                    String prod = prodIterator.next();
-                    if (removeNonproductiveSymbols(entry.getKey(), prod, (ArrayList<String>) productions)) {
-                        prodIterator.remove(); // Use the prodIterators remove() method
-                    }
+    // The current productions, with symbol codes unchanged
+    private IndexedGrammar toIndexedGrammar() {
+        List<int[]> leftSides = new ArrayList<>();
+        List<int[]> rightSides = new ArrayList<>();
+        for (int left = 0; left < productions.size(); left++) {
+            if (productions.get(left) != null) {
+                for (int[] rhs : productions.get(left)) {
+                    leftSides.add(new int[]{left});
+                    rightSides.add(rhs);
                 }
             }
         }
+        return new IndexedGrammar(symbols, startSymbol, leftSides, rightSides);
     }
 
+    private void convertToChomskyNormalForm() {
+        replaceTerminals();
+        binarize(false);
+    }
 
-    private boolean removeNonproductiveSymbols(String nonTerminalSymbol, String production, ArrayList<String> productionList) {
-        List<String> symbolList = grammar.getProductions().get(nonTerminalSymbol);
-        if (symbolList == null) {
-            productionList.remove(production);
-            return true;
+    // Every terminal gets a non-terminal of its own to stand in for it inside longer right-hand sides
+    private void replaceTerminals() {
+        int[] terminalNewProd = new int[symbols.getTerminalCount()];
+        for (int terminal = 0; terminal < terminalNewProd.length; terminal++) {
+            int newNonTerminalSymbol = generateNewNonTerminal();
+            productions.get(newNonTerminalSymbol).add(new int[]{SymbolTable.terminalCode(terminal)});
+            terminalNewProd[terminal] = newNonTerminalSymbol;
         }
-        boolean hasTerminalSymbol = false;
-        boolean hasNonTerminalSymbol = false;
-
-        for (String symbol : symbolList) {
-            if (symbol.length() == 1 && Character.isLowerCase(symbol.charAt(0))) {
-                hasTerminalSymbol = true;
-            } else if (symbol.contains(nonTerminalSymbol)) {
-                hasNonTerminalSymbol = true;
+
+        int originalCount = productions.size() - terminalNewProd.length;
+        for (int left = 0; left < originalCount; left++) {
+            List<int[]> productionList = productions.get(left);
+            if (productionList == null) {
+                continue;
+            }
+            for (int i = 0; i < productionList.size(); i++) {
+                int[] rhs = productionList.get(i);
+                if (rhs.length > 1) {
+                    rhs = rhs.clone();
+                    for (int j = 0; j < rhs.length; j++) {
+                        if (SymbolTable.isTerminal(rhs[j])) {
+                            rhs[j] = terminalNewProd[SymbolTable.terminalIndex(rhs[j])];
+                        }
+                    }
+                    productionList.set(i, rhs);
+                }
             }
         }
-        if (!hasTerminalSymbol && hasNonTerminalSymbol) {
-            productionList.remove(production);
-            grammar.getProductions().remove(nonTerminalSymbol);
-            return true;
-        }
-        return false;
     }
 
-    public void convertToChomskyNormalForm() {
-        HashMap<String, String> terminalNewProdMap = new HashMap<>();
-        for (String terminalSymbol : grammar.getTerminalSymbols()) {
-            String newNonTerminalSymbol = generateNewNonTerminal();
-            grammar.getProductions().put(newNonTerminalSymbol, new ArrayList<>(Collections.singletonList(terminalSymbol)));
-            terminalNewProdMap.put(terminalSymbol, newNonTerminalSymbol);
+    // Balanced grouping keeps the unit rules that ε-removal leaves between the new non-terminals shallow, so unit
+    // removal copies every production into O(log n) non-terminals instead of into a chain of n
+    private void binarize(boolean balanced) {
+        int originalCount = productions.size();
+        for (int left = 0; left < originalCount; left++) {
+            List<int[]> productionList = productions.get(left);
+            if (productionList == null) {
+                continue;
+            }
+            for (int i = 0; i < productionList.size(); i++) {
+                int[] rhs = productionList.get(i);
+                productionList.set(i, balanced ? groupBalanced(rhs) : groupProductions(rhs));
+            }
         }
+    }
 
-        for (String productionLeft : grammar.getProductions().keySet()) {
-            ArrayList<String> productionList = grammar.getProductions().get(productionLeft);
+    private int generateNewNonTerminal() {
+        return generateNewNonTerminal("X");
+    }
 
-            for (int i = 0; i < productionList.size(); i++) {
-                StringBuilder newRightProd = new StringBuilder();
-                newRightProd.append(productionList.get(i));
+    private int generateNewNonTerminal(String prefix) {
+        int nonTerminal = symbols.newNonTerminal(prefix);
+        productions.add(new ArrayList<>());
+        return nonTerminal;
+    }
 
-                for (String terminalSymbol : grammar.getTerminalSymbols()) {
-                    int index = newRightProd.indexOf(terminalSymbol);
+    // Replaces the leftmost pair with a shared non-terminal until at most two symbols remain
+    private int[] groupProductions(int[] prod) {
+        while (prod.length > 2) {
+            int[] shorter = new int[prod.length - 1];
+            shorter[0] = pairNonTerminal(prod[0], prod[1]);
+            System.arraycopy(prod, 2, shorter, 1, prod.length - 2);
+            prod = shorter;
+        }
+        return prod;
+    }
 
-                    if (newRightProd.length() > 1) {
-                        while (index >= 0) {
-                            newRightProd.replace(index, index + 1, terminalNewProdMap.get(terminalSymbol));
-                            index = newRightProd.indexOf(terminalSymbol);
-                        }
-                    }
-                }
-                productionList.set(i, newRightProd.toString());
-            }
-            productionList.replaceAll(ChomskyNormalFormConverter::groupProductions);
+    // Splits the right-hand side in halves recursively; equal halves share their non-terminal
+    private int[] groupBalanced(int[] prod) {
+        if (prod.length <= 2) {
+            return prod;
         }
-        grammar.getProductions().putAll(newProductions);
+        int middle = prod.length / 2;
+        return new int[]{group(prod, 0, middle), group(prod, middle, prod.length)};
     }
 
-    private static String generateNewNonTerminal(){
-        return "X" + count++;
+    private int group(int[] prod, int from, int to) {
+        if (to - from == 1) {
+            return prod[from];
+        }
+        int middle = (from + to) >>> 1;
+        return pairNonTerminal(group(prod, from, middle), group(prod, middle, to));
     }
-    private static String groupProductions(String prod) {
-        int xCount = 0;
-        for (char s : prod.toCharArray()) {
-            if (s == 'X') {
-                xCount++;
-            }
+
+    private int pairNonTerminal(int left, int right) {
+        long pair = ((long) left << 32) | (right & 0xFFFFFFFFL);
+        Integer grouped = newProdLookUp.get(pair);
+        if (grouped == null) {
+            grouped = generateNewNonTerminal();
+            productions.get(grouped).add(new int[]{left, right});
+            newProdLookUp.put(pair, grouped);
         }
+        return grouped;
+    }
 
-        while (prod.length() - xCount > 2) {
-            int appendCount = 0;
-            StringBuilder newGroup = new StringBuilder();
-            for (int i = 0; i < prod.length(); i++) {
-                if (appendCount < 2) {
-                    if (prod.charAt(i) == 'X') {
-                        appendCount++;
-                        newGroup.append(prod, i, i + 2);
-                        i++;
-                    } else {
-                        appendCount++;
-                        newGroup.append(prod.charAt(i));
-                    }
-                }
-            }
 
-            String newGroupStr = newGroup.toString();
-            if (newProdLookUp.containsKey(newGroupStr)) {
-                prod = prod.replace(newGroupStr, newProdLookUp.get(newGroupStr));
-            } else {
-                String newLP = generateNewNonTerminal();
-                newProductions.put(newLP, new ArrayList<>(Arrays.asList(newGroupStr.split(","))));
-                newProdLookUp.put(newGroupStr, newLP);
-                grammar.getNonTerminalSymbols().add(newLP);
-                prod = prod.replace(newGroupStr, newLP);
-            }
+    // Kept for old callers; it never used the converter it was called on
+    @Deprecated
+    public static Grammar getGrammar(Grammar grammar) {
+        return convert(grammar);
+    }
 
-            xCount = 0;
-            for (char s : prod.toCharArray()) {
-                if (s == 'X') {
-                    xCount++;
-                }
+    private Grammar toGrammar() {
+        List<String> nonTerminalVariables = new ArrayList<>();
+        List<Production> productionList = new ArrayList<>();
+        for (int left = 0; left < productions.size(); left++) {
+            List<int[]> rightSides = productions.get(left);
+            if (rightSides == null) {
+                continue;
+            }
+            nonTerminalVariables.add(symbols.getName(left));
+            for (int[] rhs : rightSides) {
+                productionList.add(new Production(symbols.getName(left), symbols.toString(rhs)));
             }
         }
-        return prod;
+        String[] terminalVariables = new String[symbols.getTerminalCount()];
+        for (int terminal = 0; terminal < terminalVariables.length; terminal++) {
+            terminalVariables[terminal] = symbols.getName(SymbolTable.terminalCode(terminal));
+        }
+        return new Grammar(nonTerminalVariables.toArray(new String[0]), terminalVariables,
+                productionList.toArray(new Production[0]), symbols.getName(startSymbol));
     }
 
+    // An int[] right-hand side with value equality, for de-duplicating productions
+    private static final class RightSide {
+        private final int[] symbols;
 
-    public Grammar getGrammar(Grammar grammar){
+        RightSide(int[] symbols) {
+            this.symbols = symbols;
+        }
 
-        this.grammar = grammar.convertToConvertedGrammar();
-        removeEpsilonProductions();
-        removeUnitProductions();
-        removeInaccessibleProduction();
-        convertToChomskyNormalForm();
-        return this.grammar.convertToGrammar();
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof RightSide && Arrays.equals(symbols, ((RightSide) other).symbols);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(symbols);
+        }
     }
 }
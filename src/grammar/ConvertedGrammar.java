@@ -5,6 +5,8 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+// Superseded by IndexedGrammar, kept only for Grammar.convertToConvertedGrammar
+@Deprecated
 public class ConvertedGrammar {
 
     private final Set<String> nonTerminalSymbols;
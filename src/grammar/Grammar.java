@@ -4,12 +4,19 @@ import automaton.FiniteAutomaton;
 import automaton.Transition;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 public class Grammar {
     private String[] nonTerminalVariables;
     private final String[] terminalVariables;
     private Production[] productions;
     private String startingCharacter;
+    private volatile IndexedGrammar indexedGrammar;
+    private volatile WordGenerator wordGenerator;
+
+    private static final int GENERATION_CHUNK = 1 << 12;
 
     public Grammar(String[] nonTerminalVariables, String[] terminalVariables,
                    Production[] productions, String startingCharacter) {
@@ -27,65 +34,75 @@ public class Grammar {
     }
 
     public String generateWord() {
-        return generateWord(this.startingCharacter);
+        return generateWord(WordGenerator.UNBOUNDED);
     }
 
-    private String generateWord(String symbol) {
-        StringBuilder result = new StringBuilder();
-
-        ArrayList<Production> possibleProductions = new ArrayList<>();
-        for (Production production : this.productions) {
-            if (Objects.equals(production.getLeftSide(), symbol)) {
-                possibleProductions.add(production);
-            }
-        }
+    public String generateWord(long maxLength) {
+        return wordGenerator().generate(toIndexedGrammar().getStartSymbol(), maxLength, ThreadLocalRandom.current());
+    }
 
-        Random random = new Random();
-        int randomIndex = random.nextInt(possibleProductions.size());
-        String rightSide = possibleProductions.get(randomIndex).getRightSide();
+    public Stream<String> generateWords(long count, long maxLength) {
+        return generateWords(count, maxLength, new SplittableRandom().nextLong());
+    }
 
-        for (int i = 0; i < rightSide.length(); i++) {
-            String currentSymbol = String.valueOf(rightSide.charAt(i));
-            if (isNonTerminal(currentSymbol)) {
-                result.append(generateWord(currentSymbol));
-            } else {
-                result.append(currentSymbol);
-            }
+    // The same seed always yields the same words in the same order, however the chunks are scheduled
+    public Stream<String> generateWords(long count, long maxLength, long seed) {
+        WordGenerator generator = wordGenerator();
+        int start = toIndexedGrammar().getStartSymbol();
+        long chunks = (count + GENERATION_CHUNK - 1) / GENERATION_CHUNK;
+        SplittableRandom root = new SplittableRandom(seed);
+        List<SplittableRandom> randoms = new ArrayList<>();
+        for (long chunk = 0; chunk < chunks; chunk++) {
+            randoms.add(root.split());
         }
+        return LongStream.range(0, chunks).parallel().boxed().flatMap(chunk -> {
+            SplittableRandom random = randoms.get((int) (long) chunk);
+            long size = Math.min(GENERATION_CHUNK, count - chunk * GENERATION_CHUNK);
+            return Stream.generate(() -> generator.generate(start, maxLength, random)).limit(size);
+        });
+    }
 
-        return result.toString();
+    public IndexedGrammar toIndexedGrammar() {
+        IndexedGrammar result = this.indexedGrammar;
+        if (result == null) {
+            result = IndexedGrammar.of(this.nonTerminalVariables, this.terminalVariables, this.productions,
+                    this.startingCharacter);
+            this.indexedGrammar = result;
+        }
+        return result;
     }
 
-    private boolean isNonTerminal(String symbol) {
-        for (String nonTerminal : this.nonTerminalVariables) {
-            if (Objects.equals(nonTerminal, symbol)) {
-                return true;
-            }
+    private WordGenerator wordGenerator() {
+        WordGenerator result = this.wordGenerator;
+        if (result == null) {
+            result = new WordGenerator(toIndexedGrammar());
+            this.wordGenerator = result;
         }
-        return false;
+        return result;
     }
 
     public FiniteAutomaton toFiniteAutomaton() {
-        // Q - possible states
-        String[] possibleStates = Arrays.toString(this.nonTerminalVariables).split("");
-        String[] newPossibleStates = new String[possibleStates.length + 1];
-        System.arraycopy(possibleStates, 0, newPossibleStates, 0, possibleStates.length);
-        newPossibleStates[newPossibleStates.length - 1] = "X";
-        possibleStates = newPossibleStates;
+        IndexedGrammar grammar = toIndexedGrammar();
+        SymbolTable symbols = grammar.getSymbols();
+
+        // Q - possible states: the non-terminals plus the final state X
+        String[] possibleStates = new String[symbols.getNonTerminalCount() + 1];
+        for (int i = 0; i < symbols.getNonTerminalCount(); i++) {
+            possibleStates[i] = symbols.getName(i);
+        }
+        possibleStates[possibleStates.length - 1] = "X";
 
         String[] alphabet = terminalVariables;
 
-        Transition[] transitions = new Transition[this.productions.length];
-        int i = 0;
-        for (Production production : this.productions) {
-            char currentState = production.getLeftSide().charAt(0);
-            char nextState = production.getRightSide().length() > 1
-                    ? production.getRightSide().charAt(1)
-                    : 'X';
-            String transitionLabel = String.valueOf(production.getRightSide().charAt(0));
-
-            transitions[i] = new Transition(Character.toString(currentState), transitionLabel, Character.toString(nextState));
-            i++;
+        Transition[] transitions = new Transition[grammar.getProductionCount()];
+        for (int p = 0; p < transitions.length; p++) {
+            int[] leftSide = grammar.getLeftSide(p);
+            int[] rightSide = grammar.getRightSide(p);
+            String currentState = symbols.toString(leftSide);
+            String nextState = rightSide.length > 1 ? symbols.getName(rightSide[1]) : "X";
+            String transitionLabel = rightSide.length > 0 ? symbols.getName(rightSide[0]) : SymbolTable.EPSILON;
+
+            transitions[p] = new Transition(currentState, transitionLabel, nextState);
         }
 
         String initialState = String.valueOf(startingCharacter);
@@ -95,11 +112,12 @@ public class Grammar {
         return new FiniteAutomaton(possibleStates, alphabet, transitions, initialState, finalStates);
     }
 
+    // A context-free grammar is classified by its useful productions, since the others never take part in a
+    // derivation of a word; isRegularGrammar applies the same rule
     public ChomskyType classifyGrammar() {
-        if (isRegularGrammar()) {
-            return ChomskyType.TYPE_3;
-        } else if (isContextFreeGrammar()) {
-            return ChomskyType.TYPE_2;
+        IndexedGrammar grammar = toIndexedGrammar();
+        if (grammar.isContextFree()) {
+            return isRegular(grammar) ? ChomskyType.TYPE_3 : ChomskyType.TYPE_2;
         } else if (isContextSensitiveGrammar()) {
             return ChomskyType.TYPE_1;
         } else {
@@ -108,18 +126,22 @@ public class Grammar {
     }
 
     public boolean isRegularGrammar() {
-        for (Production p : productions) {
-            String rhs = p.getRightSide();
-            if (rhs.length() == 1 && Character.isLowerCase(rhs.charAt(0))) {
+        IndexedGrammar grammar = toIndexedGrammar();
+        return grammar.isContextFree() && isRegular(grammar);
+    }
+
+    // A -> a, A -> aB or A -> Ba, and A -> ε, for every useful production
+    private static boolean isRegular(IndexedGrammar grammar) {
+        GrammarAnalysis analysis = new GrammarAnalysis(grammar);
+        for (int p = 0; p < grammar.getProductionCount(); p++) {
+            int[] rhs = grammar.getRightSide(p);
+            if (!analysis.isUsefulProduction(p)) {
+                continue;
+            }
+            if (rhs.length == 0 || rhs.length == 1 && SymbolTable.isTerminal(rhs[0])) {
+                continue;
+            } else if (rhs.length == 2 && SymbolTable.isTerminal(rhs[0]) != SymbolTable.isTerminal(rhs[1])) {
                 continue;
-            } else if (rhs.length() == 2) {
-                char firstSymbol = rhs.charAt(0);
-                char secondSymbol = rhs.charAt(1);
-                if (Character.isUpperCase(firstSymbol) && Character.isLowerCase(secondSymbol)) {
-                    continue;
-                } else if (Character.isLowerCase(firstSymbol) && Character.isUpperCase(secondSymbol)) {
-                    continue;
-                }
             }
             return false;
         }
@@ -128,28 +150,14 @@ public class Grammar {
     }
 
     public boolean isContextFreeGrammar() {
-        for (Production production : productions) {
-            String leftSide = production.getLeftSide();
-            String rightSide = production.getRightSide();
-            if (leftSide.length() != 1 || !Character.isUpperCase(leftSide.charAt(0))) {
-                return false;
-            }
-            for (int i = 0; i < rightSide.length(); i++) {
-                char symbol = rightSide.charAt(i);
-                if (!Character.isUpperCase(symbol) && !Character.isLowerCase(symbol)) {
-                    return false;
-                }
-            }
-        }
-        return true;
+        return toIndexedGrammar().isContextFree();
     }
 
+    // ε is written as one symbol, so A -> ε keeps the left side no longer than the right
     public boolean isContextSensitiveGrammar() {
-        for (Production p : productions) {
-            String leftSide = p.getLeftSide();
-            String rightSide = p.getRightSide();
-
-            if (leftSide.length() > rightSide.length()) {
+        IndexedGrammar grammar = toIndexedGrammar();
+        for (int p = 0; p < grammar.getProductionCount(); p++) {
+            if (grammar.getLeftSide(p).length > Math.max(1, grammar.getRightSide(p).length)) {
                 return false;
             }
         }
@@ -157,6 +165,8 @@ public class Grammar {
         return true;
     }
 
+    // Nothing reads this map form any more; the converter and the algorithms work on toIndexedGrammar
+    @Deprecated
     public ConvertedGrammar convertToConvertedGrammar() {
         Set<String> nonTerminalSymbols = new HashSet<>(Arrays.asList(nonTerminalVariables));
         Set<String> terminalSymbols = new HashSet<>(Arrays.asList(terminalVariables));
@@ -0,0 +1,168 @@
+package grammar;
+
+import java.util.Arrays;
+
+// Nullable, productive, reachable and useful non-terminals, each found in time linear in the grammar size.
+// Nullable and productive are counter-based worklist fixpoints: every production counts the right-hand-side
+// symbols not yet known to qualify, and its head qualifies once the count drops to zero.
+// Only context-free productions are considered
+public class GrammarAnalysis {
+    private final IndexedGrammar grammar;
+    private final boolean[] nullable;
+    private final boolean[] productive;
+    private final boolean[] reachable;
+    private final boolean[] useful;
+    // For every non-terminal, the productions it occurs in, once per occurrence
+    private final int[] occurrenceOffsets;
+    private final int[] occurrences;
+
+    public GrammarAnalysis(IndexedGrammar grammar) {
+        this.grammar = grammar;
+        int nonTerminalCount = grammar.getSymbols().getNonTerminalCount();
+        int productionCount = grammar.getProductionCount();
+
+        this.occurrenceOffsets = new int[nonTerminalCount + 1];
+        for (int p = 0; p < productionCount; p++) {
+            if (grammar.getHead(p) >= 0) {
+                for (int symbol : grammar.getRightSide(p)) {
+                    if (!SymbolTable.isTerminal(symbol)) {
+                        occurrenceOffsets[symbol + 1]++;
+                    }
+                }
+            }
+        }
+        for (int i = 1; i <= nonTerminalCount; i++) {
+            occurrenceOffsets[i] += occurrenceOffsets[i - 1];
+        }
+        this.occurrences = new int[occurrenceOffsets[nonTerminalCount]];
+        int[] fill = Arrays.copyOf(occurrenceOffsets, nonTerminalCount);
+        for (int p = 0; p < productionCount; p++) {
+            if (grammar.getHead(p) >= 0) {
+                for (int symbol : grammar.getRightSide(p)) {
+                    if (!SymbolTable.isTerminal(symbol)) {
+                        occurrences[fill[symbol]++] = p;
+                    }
+                }
+            }
+        }
+
+        this.nullable = fixpoint(true);
+        this.productive = fixpoint(false);
+        this.reachable = reachableFrom(false);
+        this.useful = reachableFrom(true);
+    }
+
+    // With nullableOnly, a production containing a terminal can never count down to zero
+    private boolean[] fixpoint(boolean nullableOnly) {
+        int nonTerminalCount = occurrenceOffsets.length - 1;
+        int productionCount = grammar.getProductionCount();
+        boolean[] result = new boolean[nonTerminalCount];
+        int[] pending = new int[productionCount];
+        int[] worklist = new int[nonTerminalCount];
+        int size = 0;
+        for (int p = 0; p < productionCount; p++) {
+            int head = grammar.getHead(p);
+            if (head < 0) {
+                continue;
+            }
+            for (int symbol : grammar.getRightSide(p)) {
+                if (SymbolTable.isTerminal(symbol)) {
+                    if (nullableOnly) {
+                        pending[p] = Integer.MAX_VALUE;
+                        break;
+                    }
+                } else {
+                    pending[p]++;
+                }
+            }
+            if (pending[p] == 0 && !result[head]) {
+                result[head] = true;
+                worklist[size++] = head;
+            }
+        }
+        while (size > 0) {
+            int symbol = worklist[--size];
+            for (int i = occurrenceOffsets[symbol]; i < occurrenceOffsets[symbol + 1]; i++) {
+                int p = occurrences[i];
+                if (pending[p] != Integer.MAX_VALUE && --pending[p] == 0) {
+                    int head = grammar.getHead(p);
+                    if (!result[head]) {
+                        result[head] = true;
+                        worklist[size++] = head;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    // With productiveOnly, only productions whose non-terminals are all productive are followed
+    private boolean[] reachableFrom(boolean productiveOnly) {
+        int nonTerminalCount = occurrenceOffsets.length - 1;
+        boolean[] result = new boolean[nonTerminalCount];
+        int start = grammar.getStartSymbol();
+        if (productiveOnly && !productive[start]) {
+            return result;
+        }
+        int[] worklist = new int[nonTerminalCount];
+        int size = 0;
+        result[start] = true;
+        worklist[size++] = start;
+        while (size > 0) {
+            int symbol = worklist[--size];
+            for (int p = grammar.getFirstProduction(symbol); p < grammar.getEndProduction(symbol); p++) {
+                if (productiveOnly && !allProductive(grammar.getRightSide(p))) {
+                    continue;
+                }
+                for (int next : grammar.getRightSide(p)) {
+                    if (!SymbolTable.isTerminal(next) && !result[next]) {
+                        result[next] = true;
+                        worklist[size++] = next;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean allProductive(int[] rhs) {
+        for (int symbol : rhs) {
+            if (!SymbolTable.isTerminal(symbol) && !productive[symbol]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public IndexedGrammar getGrammar() {
+        return grammar;
+    }
+
+    // Derives ε
+    public boolean isNullable(int nonTerminal) {
+        return nullable[nonTerminal];
+    }
+
+    // Derives at least one terminal word
+    public boolean isProductive(int nonTerminal) {
+        return productive[nonTerminal];
+    }
+
+    public boolean isReachable(int nonTerminal) {
+        return reachable[nonTerminal];
+    }
+
+    // Takes part in some derivation of a terminal word from the start symbol
+    public boolean isUseful(int nonTerminal) {
+        return useful[nonTerminal];
+    }
+
+    public boolean isUsefulProduction(int production) {
+        int head = grammar.getHead(production);
+        return head >= 0 && useful[head] && allProductive(grammar.getRightSide(production));
+    }
+
+    public boolean isLanguageEmpty() {
+        return !productive[grammar.getStartSymbol()];
+    }
+}
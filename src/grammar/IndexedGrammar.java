@@ -0,0 +1,129 @@
+package grammar;
+
+import java.util.*;
+
+// A grammar over interned symbol codes. Productions are numbered so that those of each non-terminal are
+// contiguous; productions whose left side is not a single non-terminal come last
+public class IndexedGrammar {
+    private final SymbolTable symbols;
+    private final int startSymbol;
+    private final int[][] leftSides;
+    private final int[][] rightSides;
+    private final int[] heads;
+    private final int[] offsets;
+
+    public IndexedGrammar(SymbolTable symbols, int startSymbol, List<int[]> leftSides, List<int[]> rightSides) {
+        if (leftSides.size() != rightSides.size()) {
+            throw new IllegalArgumentException("Every production needs a left and a right side");
+        }
+        // Copied, since the production index is sized by the current number of non-terminals
+        this.symbols = new SymbolTable(symbols);
+        this.startSymbol = startSymbol;
+        int count = leftSides.size();
+        int nonTerminalCount = symbols.getNonTerminalCount();
+
+        // Counting sort by head, with non-context-free productions in a last bucket
+        int[] headOf = new int[count];
+        this.offsets = new int[nonTerminalCount + 2];
+        for (int p = 0; p < count; p++) {
+            int[] left = leftSides.get(p);
+            headOf[p] = left.length == 1 && !SymbolTable.isTerminal(left[0]) ? left[0] : nonTerminalCount;
+            offsets[headOf[p] + 1]++;
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+        int[] fill = Arrays.copyOf(offsets, offsets.length - 1);
+        this.leftSides = new int[count][];
+        this.rightSides = new int[count][];
+        this.heads = new int[count];
+        for (int p = 0; p < count; p++) {
+            int slot = fill[headOf[p]]++;
+            this.leftSides[slot] = leftSides.get(p);
+            this.rightSides[slot] = rightSides.get(p);
+            this.heads[slot] = headOf[p] == nonTerminalCount ? -1 : headOf[p];
+        }
+    }
+
+    public static IndexedGrammar of(String[] nonTerminalVariables, String[] terminalVariables,
+                                    Production[] productions, String startingCharacter) {
+        SymbolTable symbols = new SymbolTable();
+        for (String nonTerminal : nonTerminalVariables) {
+            symbols.addNonTerminal(nonTerminal);
+        }
+        for (String terminal : terminalVariables) {
+            symbols.addTerminal(terminal);
+        }
+        // Undeclared left sides that cannot be spelled with known symbols are non-terminals, like X12
+        for (Production production : productions) {
+            if (symbols.tokenize(production.getLeftSide()) == null) {
+                symbols.addNonTerminal(production.getLeftSide());
+            }
+        }
+        int start = symbols.find(startingCharacter);
+        if (start == SymbolTable.NOT_FOUND) {
+            start = symbols.addNonTerminal(startingCharacter);
+        }
+
+        List<int[]> leftSides = new ArrayList<>();
+        List<int[]> rightSides = new ArrayList<>();
+        for (Production production : productions) {
+            leftSides.add(symbols.tokenize(production.getLeftSide()));
+            rightSides.add(symbols.tokenizeAddingTerminals(production.getRightSide()));
+        }
+        return new IndexedGrammar(symbols, start, leftSides, rightSides);
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public int getStartSymbol() {
+        return startSymbol;
+    }
+
+    public int getProductionCount() {
+        return rightSides.length;
+    }
+
+    public int[] getLeftSide(int production) {
+        return leftSides[production];
+    }
+
+    public int[] getRightSide(int production) {
+        return rightSides[production];
+    }
+
+    // The single non-terminal on the left, or -1 for a production that is not context-free
+    public int getHead(int production) {
+        return heads[production];
+    }
+
+    public int getFirstProduction(int nonTerminal) {
+        return offsets[nonTerminal];
+    }
+
+    public int getEndProduction(int nonTerminal) {
+        return offsets[nonTerminal + 1];
+    }
+
+    public boolean isContextFree() {
+        return offsets[offsets.length - 1] == offsets[offsets.length - 2];
+    }
+
+    public Grammar toGrammar() {
+        String[] nonTerminalVariables = new String[symbols.getNonTerminalCount()];
+        for (int i = 0; i < nonTerminalVariables.length; i++) {
+            nonTerminalVariables[i] = symbols.getName(i);
+        }
+        String[] terminalVariables = new String[symbols.getTerminalCount()];
+        for (int i = 0; i < terminalVariables.length; i++) {
+            terminalVariables[i] = symbols.getName(SymbolTable.terminalCode(i));
+        }
+        Production[] productions = new Production[rightSides.length];
+        for (int p = 0; p < productions.length; p++) {
+            productions[p] = new Production(symbols.toString(leftSides[p]), symbols.toString(rightSides[p]));
+        }
+        return new Grammar(nonTerminalVariables, terminalVariables, productions, symbols.getName(startSymbol));
+    }
+}
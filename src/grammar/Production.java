@@ -9,12 +9,6 @@ public class Production {
         this.rightSide = rightSide;
     }
 
-    public boolean isUnitProduction() {
-        return rightSide.length() == 1 && Character.isUpperCase(rightSide.charAt(0));
-    }
-    public boolean hasSymbolOnRight(String symbol) {
-        return rightSide.contains(symbol);
-    }
     public String getLeftSide() {
         return this.leftSide;
     }
@@ -0,0 +1,168 @@
+package grammar;
+
+import java.util.*;
+
+// Interns grammar symbols to int codes: non-terminal i is coded as i, terminal j as -(j + 1)
+public class SymbolTable {
+    public static final String EPSILON = "ε";
+    public static final int NOT_FOUND = Integer.MIN_VALUE;
+
+    private final List<String> nonTerminals;
+    private final List<String> terminals;
+    private final Map<String, Integer> codes;
+    private int longestName;
+    private int nextFresh;
+
+    public SymbolTable() {
+        this.nonTerminals = new ArrayList<>();
+        this.terminals = new ArrayList<>();
+        this.codes = new HashMap<>();
+    }
+
+    public SymbolTable(SymbolTable other) {
+        this.nonTerminals = new ArrayList<>(other.nonTerminals);
+        this.terminals = new ArrayList<>(other.terminals);
+        this.codes = new HashMap<>(other.codes);
+        this.longestName = other.longestName;
+        this.nextFresh = other.nextFresh;
+    }
+
+    public int addNonTerminal(String name) {
+        Integer code = codes.get(name);
+        if (code != null) {
+            if (code < 0) {
+                throw new IllegalArgumentException(name + " is already a terminal");
+            }
+            return code;
+        }
+        return register(name, nonTerminals.size(), nonTerminals);
+    }
+
+    public int addTerminal(String name) {
+        Integer code = codes.get(name);
+        if (code != null) {
+            if (code >= 0) {
+                throw new IllegalArgumentException(name + " is already a non-terminal");
+            }
+            return code;
+        }
+        return register(name, terminalCode(terminals.size()), terminals);
+    }
+
+    // A non-terminal named prefix + n for the smallest unused n
+    public int newNonTerminal(String prefix) {
+        while (codes.containsKey(prefix + nextFresh)) {
+            nextFresh++;
+        }
+        return addNonTerminal(prefix + nextFresh++);
+    }
+
+    private int register(String name, int code, List<String> names) {
+        if (name.isEmpty() || name.equals(EPSILON)) {
+            throw new IllegalArgumentException("Invalid symbol name \"" + name + "\"");
+        }
+        names.add(name);
+        codes.put(name, code);
+        longestName = Math.max(longestName, name.length());
+        return code;
+    }
+
+    public int find(String name) {
+        return codes.getOrDefault(name, NOT_FOUND);
+    }
+
+    public static boolean isTerminal(int code) {
+        return code < 0;
+    }
+
+    public static int terminalIndex(int code) {
+        return -code - 1;
+    }
+
+    public static int terminalCode(int index) {
+        return -(index + 1);
+    }
+
+    public String getName(int code) {
+        return code < 0 ? terminals.get(terminalIndex(code)) : nonTerminals.get(code);
+    }
+
+    public int getNonTerminalCount() {
+        return nonTerminals.size();
+    }
+
+    public int getTerminalCount() {
+        return terminals.size();
+    }
+
+    // Splits by longest match against known names; returns null when some part matches no symbol
+    public int[] tokenize(String text) {
+        return tokenize(text, false);
+    }
+
+    // Like tokenize, but characters matching no symbol become single-character terminals
+    public int[] tokenizeAddingTerminals(String text) {
+        return tokenize(text, true);
+    }
+
+    // Splits input text into terminals only, by longest match; returns null when some part is not a terminal
+    public int[] tokenizeTerminals(String text) {
+        int[] symbols = new int[text.length()];
+        int count = 0;
+        for (int i = 0; i < text.length(); ) {
+            int code = NOT_FOUND;
+            int length = Math.min(longestName, text.length() - i);
+            for (; length > 0; length--) {
+                code = find(text.substring(i, i + length));
+                if (code != NOT_FOUND && isTerminal(code)) {
+                    break;
+                }
+            }
+            if (length == 0) {
+                return null;
+            }
+            symbols[count++] = code;
+            i += length;
+        }
+        return Arrays.copyOf(symbols, count);
+    }
+
+    private int[] tokenize(String text, boolean addMissing) {
+        if (text.equals(EPSILON)) {
+            return new int[0];
+        }
+        int[] symbols = new int[text.length()];
+        int count = 0;
+        for (int i = 0; i < text.length(); ) {
+            int code = NOT_FOUND;
+            int length = Math.min(longestName, text.length() - i);
+            for (; length > 0; length--) {
+                code = find(text.substring(i, i + length));
+                if (code != NOT_FOUND) {
+                    break;
+                }
+            }
+            if (code == NOT_FOUND) {
+                if (!addMissing) {
+                    return null;
+                }
+                code = addTerminal(String.valueOf(text.charAt(i)));
+                length = 1;
+            }
+            symbols[count++] = code;
+            i += length;
+        }
+        return Arrays.copyOf(symbols, count);
+    }
+
+    public String toString(int[] symbols) {
+        if (symbols.length == 0) {
+            return EPSILON;
+        }
+        StringBuilder text = new StringBuilder();
+        for (int symbol : symbols) {
+            text.append(getName(symbol));
+        }
+        return text.toString();
+    }
+}
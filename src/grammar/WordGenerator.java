@@ -0,0 +1,121 @@
+package grammar;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+// Expands derivations on an explicit stack. Every choice is limited to productions whose shortest yield
+// still fits the length budget left over by the symbols waiting on the stack, so every word respects the bound.
+// Past a number of random expansions, each symbol takes its shortest, shallowest production, which always ends
+final class WordGenerator {
+    static final long UNBOUNDED = Long.MAX_VALUE / 4;
+    private static final long MAX_RANDOM_EXPANSIONS = 1 << 20;
+
+    private final IndexedGrammar grammar;
+    private final long[] minYield;
+    private final long[] productionMinYield;
+    // Height of the shallowest derivation tree reaching the shortest yield, and the production starting it
+    private final long[] height;
+    private final int[] finishing;
+
+    WordGenerator(IndexedGrammar grammar) {
+        this.grammar = grammar;
+        this.minYield = new long[grammar.getSymbols().getNonTerminalCount()];
+        this.productionMinYield = new long[grammar.getProductionCount()];
+        Arrays.fill(minYield, UNBOUNDED);
+        Arrays.fill(productionMinYield, UNBOUNDED);
+
+        this.height = new long[grammar.getSymbols().getNonTerminalCount()];
+        this.finishing = new int[grammar.getSymbols().getNonTerminalCount()];
+        Arrays.fill(height, UNBOUNDED);
+        Arrays.fill(finishing, -1);
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int nonTerminal = 0; nonTerminal < minYield.length; nonTerminal++) {
+                for (int p = grammar.getFirstProduction(nonTerminal); p < grammar.getEndProduction(nonTerminal); p++) {
+                    long yield = yieldOf(grammar.getRightSide(p));
+                    long depth = heightOf(grammar.getRightSide(p));
+                    productionMinYield[p] = yield;
+                    if (yield < minYield[nonTerminal] || yield == minYield[nonTerminal] && depth < height[nonTerminal]) {
+                        minYield[nonTerminal] = yield;
+                        height[nonTerminal] = depth;
+                        finishing[nonTerminal] = p;
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private long heightOf(int[] rightSide) {
+        long depth = 0;
+        for (int code : rightSide) {
+            if (code >= 0) {
+                depth = Math.max(depth, height[code]);
+            }
+        }
+        return Math.min(UNBOUNDED, depth + 1);
+    }
+
+    private long yieldOf(int[] rightSide) {
+        long yield = 0;
+        for (int code : rightSide) {
+            yield = Math.min(UNBOUNDED, yield + (code < 0 ? grammar.getSymbols().getName(code).length() : minYield[code]));
+        }
+        return yield;
+    }
+
+    // Makes at most min(16 * maxLength + 1024, 2^20) random choices; every symbol expanded after that takes its
+    // shortest production, so long or unbounded words are not drawn from the plain random-derivation
+    // distribution past the cutoff, but the walk always ends
+    String generate(int start, long maxLength, RandomGenerator random) {
+        if (minYield[start] >= UNBOUNDED) {
+            throw new IllegalStateException("Non-terminal " + grammar.getSymbols().getName(start) + " derives no word");
+        }
+        if (minYield[start] > maxLength) {
+            throw new IllegalArgumentException("The shortest word of " + grammar.getSymbols().getName(start) + " has length "
+                    + minYield[start] + ", above the bound " + maxLength);
+        }
+
+        StringBuilder word = new StringBuilder();
+        int[] stack = new int[16];
+        int size = 0;
+        stack[size++] = start;
+        long pending = minYield[start];
+        long randomExpansions = maxLength > (MAX_RANDOM_EXPANSIONS - 1024) / 16
+                ? MAX_RANDOM_EXPANSIONS : Math.max(0, 16 * maxLength + 1024);
+        while (size > 0) {
+            int symbol = stack[--size];
+            if (symbol < 0) {
+                String terminal = grammar.getSymbols().getName(symbol);
+                word.append(terminal);
+                pending -= terminal.length();
+                continue;
+            }
+            pending -= minYield[symbol];
+            // Below UNBOUNDED, so productions that derive no word never fit
+            long budget = Math.min(UNBOUNDED - 1, maxLength - word.length() - pending);
+
+            // Reservoir pick among the productions that still fit
+            int chosen = finishing[symbol];
+            if (randomExpansions-- > 0) {
+                int eligible = 0;
+                for (int p = grammar.getFirstProduction(symbol); p < grammar.getEndProduction(symbol); p++) {
+                    if (productionMinYield[p] < UNBOUNDED && productionMinYield[p] <= budget && random.nextInt(++eligible) == 0) {
+                        chosen = p;
+                    }
+                }
+            }
+            int[] rightSide = grammar.getRightSide(chosen);
+            if (size + rightSide.length > stack.length) {
+                stack = Arrays.copyOf(stack, Math.max(stack.length * 2, size + rightSide.length));
+            }
+            for (int i = rightSide.length - 1; i >= 0; i--) {
+                stack[size++] = rightSide[i];
+            }
+            pending += productionMinYield[chosen];
+        }
+        return word.toString();
+    }
+}
@@ -0,0 +1,240 @@
+package parser;
+
+import grammar.ChomskyNormalFormConverter;
+import grammar.Grammar;
+import grammar.GrammarAnalysis;
+import grammar.IndexedGrammar;
+import grammar.SymbolTable;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+// Bit-parallel CYK. For every non-terminal, ends[i] holds the end positions of spans starting at i that it
+// derives and starts[j] the start positions of spans ending at j, so a binary rule A -> BC covers [i, j)
+// exactly when ends(B)[i] and starts(C)[j] intersect, which is a word-wide AND over the split points.
+// Rows are keyed by position and then non-terminal, and a position's table of N row references is allocated
+// the first time any span starts or ends there. A row is allocated the first time its non-terminal derives
+// such a span, and only covers the positions on the far side of it. For n tokens, memory is at most
+// 16·N + 32 bytes of references per position that a span starts or ends at, plus N·(n + 1)²/8 bytes of row data,
+// the latter reached only when every non-terminal derives spans starting and ending at every position
+public class CykRecognizer {
+    private static final int PARALLEL_ROWS = 64;
+
+    private final SymbolTable symbols;
+    private final int startSymbol;
+    private final int nonTerminalCount;
+    private final int words;
+    private final boolean startNullable;
+    // Binary rules as parallel arrays: head -> left right
+    private final int[] ruleHeads;
+    private final int[] ruleLefts;
+    private final int[] ruleRights;
+    // Non-terminals deriving each terminal, already closed under unit rules
+    private final long[][] terminalSets;
+    // unitClosure[X] holds every A with A =>* X through unit and nullable-padded rules
+    private final long[][] unitClosure;
+
+    // Accepts Chomsky normal form, tolerating the unit and ε rules the converter may leave behind
+    public CykRecognizer(Grammar grammar) {
+        IndexedGrammar indexed = grammar.toIndexedGrammar();
+        this.symbols = indexed.getSymbols();
+        this.startSymbol = indexed.getStartSymbol();
+        this.nonTerminalCount = symbols.getNonTerminalCount();
+        this.words = (nonTerminalCount + 63) >>> 6;
+        if (!indexed.isContextFree()) {
+            throw new IllegalArgumentException("CYK needs a context-free grammar");
+        }
+
+        GrammarAnalysis analysis = new GrammarAnalysis(indexed);
+        boolean[] nullable = new boolean[nonTerminalCount];
+        for (int symbol = 0; symbol < nonTerminalCount; symbol++) {
+            nullable[symbol] = analysis.isNullable(symbol);
+        }
+        this.startNullable = nullable[startSymbol];
+
+        List<int[]> binary = new ArrayList<>();
+        List<List<Integer>> unitParents = new ArrayList<>();
+        for (int i = 0; i < nonTerminalCount; i++) {
+            unitParents.add(new ArrayList<>());
+        }
+        this.terminalSets = new long[symbols.getTerminalCount()][words];
+        for (int p = 0; p < indexed.getProductionCount(); p++) {
+            int head = indexed.getHead(p);
+            int[] rhs = indexed.getRightSide(p);
+            if (rhs.length == 1 && SymbolTable.isTerminal(rhs[0])) {
+                set(terminalSets[SymbolTable.terminalIndex(rhs[0])], head);
+            } else if (rhs.length == 1) {
+                unitParents.get(rhs[0]).add(head);
+            } else if (rhs.length == 2 && !SymbolTable.isTerminal(rhs[0]) && !SymbolTable.isTerminal(rhs[1])) {
+                binary.add(new int[]{head, rhs[0], rhs[1]});
+                // A nullable side lets the other one stand alone
+                if (nullable[rhs[0]]) {
+                    unitParents.get(rhs[1]).add(head);
+                }
+                if (nullable[rhs[1]]) {
+                    unitParents.get(rhs[0]).add(head);
+                }
+            } else if (rhs.length != 0) {
+                throw new IllegalArgumentException("Not in Chomsky normal form: " + symbols.getName(head)
+                        + " -> " + symbols.toString(rhs));
+            }
+        }
+        this.ruleHeads = new int[binary.size()];
+        this.ruleLefts = new int[binary.size()];
+        this.ruleRights = new int[binary.size()];
+        for (int r = 0; r < binary.size(); r++) {
+            ruleHeads[r] = binary.get(r)[0];
+            ruleLefts[r] = binary.get(r)[1];
+            ruleRights[r] = binary.get(r)[2];
+        }
+
+        this.unitClosure = new long[nonTerminalCount][words];
+        int[] stack = new int[nonTerminalCount];
+        for (int symbol = 0; symbol < nonTerminalCount; symbol++) {
+            long[] closure = unitClosure[symbol];
+            set(closure, symbol);
+            int size = 0;
+            stack[size++] = symbol;
+            while (size > 0) {
+                for (int parent : unitParents.get(stack[--size])) {
+                    if (!get(closure, parent)) {
+                        set(closure, parent);
+                        stack[size++] = parent;
+                    }
+                }
+            }
+        }
+        for (long[] terminalSet : terminalSets) {
+            close(terminalSet);
+        }
+    }
+
+    // Converts to Chomsky normal form first
+    public static CykRecognizer fromAnyGrammar(Grammar grammar) {
+        return new CykRecognizer(ChomskyNormalFormConverter.convert(grammar));
+    }
+
+    public boolean accepts(String input) {
+        int[] terminals = symbols.tokenizeTerminals(input);
+        return terminals != null && accepts(terminals);
+    }
+
+    public boolean accepts(int[] terminals) {
+        int n = terminals.length;
+        if (n == 0) {
+            return startNullable;
+        }
+        int rowWords = (n + 1 + 63) >>> 6;
+        // ends[i][A] keeps word w of the positions at w - i / 64, starts[j][A] at w
+        long[][][] ends = new long[n + 1][][];
+        long[][][] starts = new long[n + 1][][];
+
+        for (int i = 0; i < n; i++) {
+            int terminal = SymbolTable.terminalIndex(terminals[i]);
+            if (terminals[i] >= 0 || terminal >= terminalSets.length) {
+                return false;
+            }
+            record(terminalSets[terminal], i, i + 1, rowWords, ends, starts);
+        }
+
+        long[] result = new long[words];
+        for (int length = 2; length <= n; length++) {
+            int span = length;
+            IntStream rows = IntStream.rangeClosed(0, n - span);
+            if (n - span + 1 >= PARALLEL_ROWS) {
+                rows = rows.parallel();
+            }
+            rows.forEach(i -> {
+                long[] cell = combine(i, i + span, rowWords, ends, starts);
+                if (cell != null) {
+                    record(cell, i, i + span, rowWords, ends, starts);
+                    if (i == 0 && span == n) {
+                        System.arraycopy(cell, 0, result, 0, words);
+                    }
+                }
+            });
+        }
+        if (n == 1) {
+            return get(terminalSets[SymbolTable.terminalIndex(terminals[0])], startSymbol);
+        }
+        return get(result, startSymbol);
+    }
+
+    private long[] combine(int i, int j, int rowWords, long[][][] ends, long[][][] starts) {
+        if (ends[i] == null || starts[j] == null) {
+            return null;
+        }
+        long[] cell = null;
+        int firstWord = (i + 1) >>> 6;
+        int lastWord = (j - 1) >>> 6;
+        for (int r = 0; r < ruleHeads.length; r++) {
+            int head = ruleHeads[r];
+            if (cell != null && get(cell, head)) {
+                continue;
+            }
+            long[] left = ends[i][ruleLefts[r]];
+            long[] right = starts[j][ruleRights[r]];
+            if (left == null || right == null) {
+                continue;
+            }
+            int leftBase = i >>> 6;
+            for (int w = firstWord; w <= lastWord; w++) {
+                if ((left[w - leftBase] & right[w]) != 0) {
+                    if (cell == null) {
+                        cell = new long[words];
+                    }
+                    set(cell, head);
+                    break;
+                }
+            }
+        }
+        if (cell != null) {
+            close(cell);
+        }
+        return cell;
+    }
+
+    // Positions i and j belong to this span's task alone while spans of one length are combined
+    private void record(long[] cell, int i, int j, int rowWords, long[][][] ends, long[][][] starts) {
+        if (ends[i] == null) {
+            ends[i] = new long[nonTerminalCount][];
+        }
+        if (starts[j] == null) {
+            starts[j] = new long[nonTerminalCount][];
+        }
+        for (int w = 0; w < words; w++) {
+            for (long bits = cell[w]; bits != 0; bits &= bits - 1) {
+                int symbol = (w << 6) + Long.numberOfTrailingZeros(bits);
+                if (ends[i][symbol] == null) {
+                    ends[i][symbol] = new long[rowWords - (i >>> 6)];
+                }
+                if (starts[j][symbol] == null) {
+                    starts[j][symbol] = new long[(j >>> 6) + 1];
+                }
+                ends[i][symbol][(j >>> 6) - (i >>> 6)] |= 1L << j;
+                starts[j][symbol][i >>> 6] |= 1L << i;
+            }
+        }
+    }
+
+    private void close(long[] cell) {
+        long[] closed = cell.clone();
+        for (int w = 0; w < words; w++) {
+            for (long bits = cell[w]; bits != 0; bits &= bits - 1) {
+                long[] parents = unitClosure[(w << 6) + Long.numberOfTrailingZeros(bits)];
+                for (int v = 0; v < words; v++) {
+                    closed[v] |= parents[v];
+                }
+            }
+        }
+        System.arraycopy(closed, 0, cell, 0, words);
+    }
+
+    private static boolean get(long[] set, int bit) {
+        return (set[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private static void set(long[] set, int bit) {
+        set[bit >>> 6] |= 1L << bit;
+    }
+}
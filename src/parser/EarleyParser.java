@@ -0,0 +1,442 @@
+package parser;
+
+import grammar.Grammar;
+import grammar.IndexedGrammar;
+import grammar.SymbolTable;
+
+import java.util.*;
+
+// Earley parsing straight on a context-free grammar, building a shared packed parse forest as in Scott's
+// "SPPF-style parsing from Earley recognisers". An item is a (slot, origin) pair, where a slot numbers one dotted
+// production. Every item set indexes its items by pair and its waiting items by the non-terminal after the dot,
+// so completion only visits the items it advances. Deterministic right recursion goes through Leo's transitive
+// items: a completion jumps straight to the topmost item of a chain of single waiting items, and the forest nodes
+// along the chain are only built when a node ending at that position is first read
+public class EarleyParser {
+    private static final int END = Integer.MAX_VALUE;
+
+    private final IndexedGrammar grammar;
+    private final SymbolTable symbols;
+    private final int startSymbol;
+    private final int[] firstSlots;
+    // Per slot: the symbol after the dot (END when complete), the production and the dot position
+    private final int[] slotNext;
+    private final int[] slotProduction;
+    private final int[] slotDot;
+    private final String[] slotNames;
+
+    public EarleyParser(Grammar grammar) {
+        this.grammar = grammar.toIndexedGrammar();
+        if (!this.grammar.isContextFree()) {
+            throw new IllegalArgumentException("Earley parsing needs a context-free grammar");
+        }
+        this.symbols = this.grammar.getSymbols();
+        this.startSymbol = this.grammar.getStartSymbol();
+
+        int productionCount = this.grammar.getProductionCount();
+        this.firstSlots = new int[productionCount];
+        int slotCount = 0;
+        for (int p = 0; p < productionCount; p++) {
+            firstSlots[p] = slotCount;
+            slotCount += this.grammar.getRightSide(p).length + 1;
+        }
+        this.slotNext = new int[slotCount];
+        this.slotProduction = new int[slotCount];
+        this.slotDot = new int[slotCount];
+        this.slotNames = new String[slotCount];
+        for (int p = 0; p < productionCount; p++) {
+            int[] rhs = this.grammar.getRightSide(p);
+            for (int dot = 0; dot <= rhs.length; dot++) {
+                int slot = firstSlots[p] + dot;
+                slotNext[slot] = dot < rhs.length ? rhs[dot] : END;
+                slotProduction[slot] = p;
+                slotDot[slot] = dot;
+                slotNames[slot] = symbols.getName(this.grammar.getHead(p)) + " -> "
+                        + names(rhs, 0, dot) + "·" + names(rhs, dot, rhs.length);
+            }
+        }
+    }
+
+    private String names(int[] rhs, int from, int to) {
+        StringBuilder text = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            text.append(symbols.getName(rhs[i]));
+        }
+        return text.toString();
+    }
+
+    public boolean accepts(String input) {
+        return parse(input) != null;
+    }
+
+    public boolean accepts(int[] terminals) {
+        return parse(terminals) != null;
+    }
+
+    // Returns null when the input is not in the language
+    public ParseForest parse(String input) {
+        int[] terminals = symbols.tokenizeTerminals(input);
+        return terminals == null ? null : parse(terminals);
+    }
+
+    public ParseForest parse(int[] terminals) {
+        ForestNode root = new Chart(terminals).run();
+        return root == null ? null : new ParseForest(root);
+    }
+
+    private final class Chart {
+        private final int[] input;
+        private final ItemSet[] sets;
+        // Nodes ending at the current position, keyed by label and start
+        private Map<Long, ForestNode> nodes = new HashMap<>();
+        private Deferred deferred;
+        private int position;
+
+        Chart(int[] input) {
+            this.input = input;
+            this.sets = new ItemSet[input.length + 1];
+        }
+
+        ForestNode run() {
+            sets[0] = new ItemSet();
+            deferred = new Deferred(nodes, 0);
+            for (int p = grammar.getFirstProduction(startSymbol); p < grammar.getEndProduction(startSymbol); p++) {
+                sets[0].add(firstSlots[p], 0, null);
+            }
+            for (position = 0; ; ) {
+                ItemSet set = sets[position];
+                int scanned = process(set);
+                deferred.seal();
+                if (position == input.length) {
+                    break;
+                }
+                if (scanned == 0) {
+                    return null;
+                }
+
+                int terminal = input[position];
+                ForestNode leaf = new ForestNode(symbols.getName(terminal), terminal, false, position, position + 1,
+                        null);
+                ItemSet next = new ItemSet();
+                sets[++position] = next;
+                nodes = new HashMap<>();
+                deferred = new Deferred(nodes, position);
+                for (int s = 0; s < scanned; s++) {
+                    int item = set.scanned[s];
+                    int slot = set.slots[item] + 1;
+                    int origin = set.origins[item];
+                    next.add(slot, origin, makeNode(slot, origin, set.nodes[item], leaf));
+                }
+            }
+            // The root itself may sit inside a chain that is still deferred
+            deferred.run();
+            return nodes.get(key(startSymbol, 0));
+        }
+
+        // Predicts and completes until the set is closed; returns how many items can scan the next terminal
+        private int process(ItemSet set) {
+            int scanned = 0;
+            for (int item = 0; item < set.size; item++) {
+                int slot = set.slots[item];
+                int origin = set.origins[item];
+                int next = slotNext[slot];
+                if (next == END) {
+                    complete(set, grammar.getHead(slotProduction[slot]), origin, set.nodes[item]);
+                } else if (SymbolTable.isTerminal(next)) {
+                    if (position < input.length && next == input[position]) {
+                        set.scanned = grow(set.scanned, scanned);
+                        set.scanned[scanned++] = item;
+                    }
+                } else {
+                    if (set.addWaiting(next, item)) {
+                        for (int p = grammar.getFirstProduction(next); p < grammar.getEndProduction(next); p++) {
+                            set.add(firstSlots[p], position, null);
+                        }
+                    }
+                    // A non-terminal already completed empty here will not complete again
+                    ForestNode empty = set.emptyNodes == null ? null : set.emptyNodes.get(next);
+                    if (empty != null) {
+                        set.add(slot + 1, origin, makeNode(slot + 1, origin, set.nodes[item], empty));
+                    }
+                }
+            }
+            return scanned;
+        }
+
+        private void complete(ItemSet set, int head, int origin, ForestNode node) {
+            if (node == null) {
+                node = symbolNode(head, position);
+                node.addFamily(null, null);
+            }
+            if (origin == position) {
+                if (set.emptyNodes == null) {
+                    set.emptyNodes = new HashMap<>();
+                }
+                set.emptyNodes.put(head, node);
+            }
+            LeoEntry leo = origin < position ? leo(origin, head) : null;
+            if (leo != null && leo.parent != null) {
+                LeoEntry top = leo.top;
+                ForestNode topNode = symbolNode(grammar.getHead(slotProduction[top.slot]), top.origin);
+                deferred.add(leo, node, topNode);
+                set.add(top.slot, top.origin, topNode);
+                return;
+            }
+            ItemSet from = sets[origin];
+            for (int waiting = from.firstWaiting(head); waiting >= 0; waiting = from.nextWaiting[waiting]) {
+                int slot = from.slots[waiting] + 1;
+                int waitingOrigin = from.origins[waiting];
+                set.add(slot, waitingOrigin, makeNode(slot, waitingOrigin, from.nodes[waiting], node));
+            }
+        }
+
+        // The chain of single waiting items above a non-terminal completed from the given set, each of which completes
+        // its own production; null when the symbol has no single such item. Finished sets never change, so the
+        // entries are memoized per set
+        private LeoEntry leo(int setIndex, int symbol) {
+            List<int[]> path = new ArrayList<>();
+            LeoEntry result;
+            while (true) {
+                ItemSet set = sets[setIndex];
+                if (set.leoEntries == null) {
+                    set.leoEntries = new HashMap<>();
+                }
+                if (set.leoEntries.containsKey(symbol)) {
+                    result = set.leoEntries.get(symbol);
+                    break;
+                }
+                // Marked before following the chain, so a cycle of unit rules ends it
+                set.leoEntries.put(symbol, null);
+                int item = set.firstWaiting(symbol);
+                if (item < 0 || set.nextWaiting[item] >= 0 || slotNext[set.slots[item] + 1] != END) {
+                    result = null;
+                    break;
+                }
+                path.add(new int[]{setIndex, symbol, item});
+                symbol = grammar.getHead(slotProduction[set.slots[item]]);
+                setIndex = set.origins[item];
+            }
+            for (int step = path.size() - 1; step >= 0; step--) {
+                ItemSet set = sets[path.get(step)[0]];
+                int item = path.get(step)[2];
+                result = new LeoEntry(set.slots[item] + 1, set.origins[item], set.nodes[item], result);
+                set.leoEntries.put(path.get(step)[1], result);
+            }
+            return result;
+        }
+
+        // The node for an item just advanced past right, where left covers what came before
+        private ForestNode makeNode(int slot, int start, ForestNode left, ForestNode right) {
+            boolean complete = slotNext[slot] == END;
+            if (slotDot[slot] == 1 && !complete) {
+                return right;
+            }
+            ForestNode node;
+            if (complete) {
+                node = symbolNode(grammar.getHead(slotProduction[slot]), start);
+            } else {
+                node = nodes.get(key(-slot - 1, start));
+                if (node == null) {
+                    node = new ForestNode(slotNames[slot], SymbolTable.NOT_FOUND, true, start, position, deferred);
+                    nodes.put(key(-slot - 1, start), node);
+                }
+            }
+            node.addFamily(left, right);
+            return node;
+        }
+
+        private ForestNode symbolNode(int symbol, int start) {
+            ForestNode node = nodes.get(key(symbol, start));
+            if (node == null) {
+                node = new ForestNode(symbols.getName(symbol), symbol, false, start, position, deferred);
+                nodes.put(key(symbol, start), node);
+            }
+            return node;
+        }
+
+    }
+
+    private static long key(int label, int start) {
+        return ((long) label << 32) | start;
+    }
+
+    // A completed item reached through a single waiting item: the complete slot, its origin and the node for what
+    // came before the completed symbol
+    private static final class LeoEntry {
+        private final int slot;
+        private final int origin;
+        private final ForestNode left;
+        private final LeoEntry parent;
+        private final LeoEntry top;
+
+        LeoEntry(int slot, int origin, ForestNode left, LeoEntry parent) {
+            this.slot = slot;
+            this.origin = origin;
+            this.left = left;
+            this.parent = parent;
+            this.top = parent == null ? this : parent.top;
+        }
+    }
+
+    // The chains Leo skipped at one position, rebuilt together the first time any node ending there is read, so a
+    // node never gains families after it has been looked at
+    private final class Deferred implements Runnable {
+        private final int end;
+        private Map<Long, ForestNode> nodes;
+        // Per chain: its first entry, the node completed below it and the node of its topmost item
+        private List<Object[]> chains;
+
+        Deferred(Map<Long, ForestNode> nodes, int end) {
+            this.nodes = nodes;
+            this.end = end;
+        }
+
+        void add(LeoEntry entry, ForestNode bottom, ForestNode top) {
+            if (chains == null) {
+                chains = new ArrayList<>(1);
+            }
+            chains.add(new Object[]{entry, bottom, top});
+        }
+
+        // The position is finished; without chains the node index is not needed any more
+        void seal() {
+            if (chains == null) {
+                nodes = null;
+            }
+        }
+
+        @Override
+        public synchronized void run() {
+            if (chains == null) {
+                return;
+            }
+            for (Object[] chain : chains) {
+                expand((LeoEntry) chain[0], (ForestNode) chain[1], (ForestNode) chain[2]);
+            }
+            chains = null;
+            nodes = null;
+        }
+
+        private void expand(LeoEntry entry, ForestNode node, ForestNode top) {
+            for (; entry.parent != null; entry = entry.parent) {
+                int head = grammar.getHead(slotProduction[entry.slot]);
+                ForestNode next = nodes.get(key(head, entry.origin));
+                if (next == null) {
+                    next = new ForestNode(symbols.getName(head), head, false, entry.origin, end, this);
+                    nodes.put(key(head, entry.origin), next);
+                }
+                next.addFamily(entry.left, node);
+                node = next;
+            }
+            top.addFamily(entry.left, node);
+        }
+    }
+
+    private static int[] grow(int[] array, int size) {
+        return size < array.length ? array : Arrays.copyOf(array, Math.max(8, array.length * 2));
+    }
+
+    // Items in insertion order, with an open-addressing index by (slot, origin) and per-symbol waiting lists
+    private static final class ItemSet {
+        private int[] slots = new int[4];
+        private int[] origins = new int[4];
+        private ForestNode[] nodes = new ForestNode[4];
+        private int[] nextWaiting = new int[4];
+        private int[] scanned = new int[4];
+        private int size;
+        // Item index + 1, 0 when free
+        private int[] index = new int[8];
+        // Non-terminal + 1 and the latest item waiting for it
+        private int[] waitingSymbols = new int[4];
+        private int[] waitingHeads = new int[4];
+        private int waitingCount;
+        private Map<Integer, ForestNode> emptyNodes;
+        private Map<Integer, LeoEntry> leoEntries;
+
+        void add(int slot, int origin, ForestNode node) {
+            int mask = index.length - 1;
+            int at = hash(slot, origin) & mask;
+            for (; index[at] != 0; at = (at + 1) & mask) {
+                int item = index[at] - 1;
+                if (slots[item] == slot && origins[item] == origin) {
+                    return;
+                }
+            }
+            if (size == slots.length) {
+                int capacity = size * 2;
+                slots = Arrays.copyOf(slots, capacity);
+                origins = Arrays.copyOf(origins, capacity);
+                nodes = Arrays.copyOf(nodes, capacity);
+                nextWaiting = Arrays.copyOf(nextWaiting, capacity);
+            }
+            slots[size] = slot;
+            origins[size] = origin;
+            nodes[size] = node;
+            nextWaiting[size] = -1;
+            index[at] = ++size;
+            if (size * 2 > index.length) {
+                rehash();
+            }
+        }
+
+        private void rehash() {
+            index = new int[index.length * 2];
+            int mask = index.length - 1;
+            for (int item = 0; item < size; item++) {
+                int at = hash(slots[item], origins[item]) & mask;
+                while (index[at] != 0) {
+                    at = (at + 1) & mask;
+                }
+                index[at] = item + 1;
+            }
+        }
+
+        private static int hash(int slot, int origin) {
+            int h = slot * 0x9E3779B1 + origin;
+            return h ^ (h >>> 16);
+        }
+
+        // Returns true when this is the first item waiting for the symbol, so it still has to be predicted
+        boolean addWaiting(int symbol, int item) {
+            int mask = waitingSymbols.length - 1;
+            int at = hash(symbol, 0) & mask;
+            for (; waitingSymbols[at] != 0; at = (at + 1) & mask) {
+                if (waitingSymbols[at] == symbol + 1) {
+                    nextWaiting[item] = waitingHeads[at];
+                    waitingHeads[at] = item;
+                    return false;
+                }
+            }
+            waitingSymbols[at] = symbol + 1;
+            waitingHeads[at] = item;
+            if (++waitingCount * 2 > waitingSymbols.length) {
+                int[] oldSymbols = waitingSymbols;
+                int[] oldHeads = waitingHeads;
+                waitingSymbols = new int[oldSymbols.length * 2];
+                waitingHeads = new int[oldSymbols.length * 2];
+                mask = waitingSymbols.length - 1;
+                for (int i = 0; i < oldSymbols.length; i++) {
+                    if (oldSymbols[i] != 0) {
+                        int slot = hash(oldSymbols[i] - 1, 0) & mask;
+                        while (waitingSymbols[slot] != 0) {
+                            slot = (slot + 1) & mask;
+                        }
+                        waitingSymbols[slot] = oldSymbols[i];
+                        waitingHeads[slot] = oldHeads[i];
+                    }
+                }
+            }
+            return true;
+        }
+
+        int firstWaiting(int symbol) {
+            int mask = waitingSymbols.length - 1;
+            for (int at = hash(symbol, 0) & mask; waitingSymbols[at] != 0; at = (at + 1) & mask) {
+                if (waitingSymbols[at] == symbol + 1) {
+                    return waitingHeads[at];
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// A node of a shared packed parse forest: a symbol spanning [start, end), or an intermediate node for a partly
+// recognised production. Each family is one way to derive the node, with zero (ε), one or two children
+public class ForestNode {
+    private static final ForestNode[] EMPTY = new ForestNode[0];
+
+    private final String label;
+    private final int symbol;
+    private final boolean intermediate;
+    private final int start;
+    private final int end;
+    private final List<ForestNode[]> families = new ArrayList<>(1);
+    // Adds the families the parser deferred for every node ending at the same position; run before reading
+    private final Runnable deferred;
+
+    ForestNode(String label, int symbol, boolean intermediate, int start, int end, Runnable deferred) {
+        this.label = label;
+        this.symbol = symbol;
+        this.intermediate = intermediate;
+        this.start = start;
+        this.end = end;
+        this.deferred = deferred;
+    }
+
+    // Either child may be null; a family is only added once
+    void addFamily(ForestNode left, ForestNode right) {
+        ForestNode[] family = left == null
+                ? right == null ? EMPTY : new ForestNode[]{right}
+                : new ForestNode[]{left, right};
+        for (ForestNode[] existing : families) {
+            if (Arrays.equals(existing, family)) {
+                return;
+            }
+        }
+        families.add(family);
+    }
+
+    List<ForestNode[]> families() {
+        if (deferred != null) {
+            deferred.run();
+        }
+        return families;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    // The symbol code from the grammar's SymbolTable; meaningless for intermediate nodes
+    public int getSymbol() {
+        return symbol;
+    }
+
+    public boolean isIntermediate() {
+        return intermediate;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public boolean isAmbiguous() {
+        return families().size() > 1;
+    }
+
+    public List<List<ForestNode>> getFamilies() {
+        List<List<ForestNode>> result = new ArrayList<>(families().size());
+        for (ForestNode[] family : families) {
+            result.add(List.of(family));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + label + ", " + start + ", " + end + ")";
+    }
+}
@@ -0,0 +1,86 @@
+package parser;
+
+import java.math.BigInteger;
+import java.util.*;
+
+public class ParseForest {
+    private final ForestNode root;
+
+    ParseForest(ForestNode root) {
+        this.root = root;
+    }
+
+    public ForestNode getRoot() {
+        return root;
+    }
+
+    public int getNodeCount() {
+        return reachableNodes().size();
+    }
+
+    public boolean isAmbiguous() {
+        for (ForestNode node : reachableNodes()) {
+            if (node.isAmbiguous()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Number of distinct derivation trees; a cyclic forest (from rules like A -> A) has infinitely many
+    public BigInteger countTrees() {
+        Map<ForestNode, BigInteger> counts = new HashMap<>();
+        Set<ForestNode> open = new HashSet<>();
+        Deque<ForestNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        // Iterative post-order, so deep forests do not overflow the Java stack
+        while (!stack.isEmpty()) {
+            ForestNode node = stack.peek();
+            if (counts.containsKey(node)) {
+                stack.pop();
+                continue;
+            }
+            if (open.add(node)) {
+                for (ForestNode[] family : node.families()) {
+                    for (ForestNode child : family) {
+                        if (open.contains(child) && !counts.containsKey(child)) {
+                            throw new IllegalStateException("The forest is cyclic and has infinitely many trees");
+                        }
+                        if (!counts.containsKey(child)) {
+                            stack.push(child);
+                        }
+                    }
+                }
+                continue;
+            }
+            stack.pop();
+            BigInteger count = node.families().isEmpty() ? BigInteger.ONE : BigInteger.ZERO;
+            for (ForestNode[] family : node.families()) {
+                BigInteger product = BigInteger.ONE;
+                for (ForestNode child : family) {
+                    product = product.multiply(counts.get(child));
+                }
+                count = count.add(product);
+            }
+            counts.put(node, count);
+        }
+        return counts.get(root);
+    }
+
+    private Set<ForestNode> reachableNodes() {
+        Set<ForestNode> seen = new HashSet<>();
+        Deque<ForestNode> stack = new ArrayDeque<>();
+        seen.add(root);
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            for (ForestNode[] family : stack.pop().families()) {
+                for (ForestNode child : family) {
+                    if (seen.add(child)) {
+                        stack.push(child);
+                    }
+                }
+            }
+        }
+        return seen;
+    }
+}
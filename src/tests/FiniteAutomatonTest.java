@@ -0,0 +1,599 @@
+package tests;
+
+import automaton.CompiledAutomaton;
+import automaton.DictionaryBuilder;
+import automaton.FiniteAutomaton;
+import automaton.LanguageCheck;
+import automaton.LazyDfa;
+import automaton.MappedAutomaton;
+import automaton.MappedFileScanner;
+import automaton.Matcher;
+import automaton.MatcherGenerator;
+import automaton.MultiMatcher;
+import automaton.OffHeapAutomaton;
+import automaton.StreamingMatcher;
+import automaton.Transition;
+import automaton.WordSampler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+public class FiniteAutomatonTest {
+    private FiniteAutomaton nfa;
+    private FiniteAutomaton dfa;
+
+    @BeforeEach
+    void setUp() {
+        this.nfa = new FiniteAutomaton(
+                new String[]{"q0", "q1", "q2", "q3"},
+                new String[]{"a", "b", "c"},
+                new Transition[]{
+                        new Transition("q0", "a", "q1"),
+                        new Transition("q1", "b", "q2"),
+                        new Transition("q2", "c", "q0"),
+                        new Transition("q1", "a", "q3"),
+                        new Transition("q0", "b", "q2"),
+                        new Transition("q2", "c", "q3"),
+                },
+                "q0",
+                new String[]{"q3"}
+        );
+
+        this.dfa = new FiniteAutomaton(
+                new String[]{"q0", "q1"},
+                new String[]{"a", "b"},
+                new Transition[]{
+                        new Transition("q0", "a", "q1"),
+                        new Transition("q0", "b", "q0"),
+                        new Transition("q1", "a", "q0"),
+                        new Transition("q1", "b", "q1"),
+                },
+                "q0",
+                new String[]{"q1"}
+        );
+    }
+
+    @Test
+    void testIsWordValidNondeterministic() {
+        assertTrue(this.nfa.isWordValid("aa"));
+        assertTrue(this.nfa.isWordValid("bc"));
+        assertTrue(this.nfa.isWordValid("abcaa"));
+        assertFalse(this.nfa.isWordValid(""));
+        assertFalse(this.nfa.isWordValid("ab"));
+        assertFalse(this.nfa.isWordValid("ad"));
+    }
+
+    @Test
+    void testIsWordValidDeterministic() {
+        assertTrue(this.dfa.compile().isDeterministic());
+        assertTrue(this.dfa.isWordValid("a"));
+        assertTrue(this.dfa.isWordValid("babbb"));
+        assertFalse(this.dfa.isWordValid("aa"));
+        assertFalse(this.dfa.isWordValid("abc"));
+    }
+
+    @Test
+    void testIsWordValidWithEpsilon() {
+        FiniteAutomaton automaton = new FiniteAutomaton(
+                new String[]{"q0", "q1", "q2"},
+                new String[]{"a", "b"},
+                new Transition[]{
+                        new Transition("q0", "e", "q1"),
+                        new Transition("q1", "a", "q1"),
+                        new Transition("q1", "e", "q2"),
+                        new Transition("q2", "b", "q2"),
+                },
+                "q0",
+                new String[]{"q2"}
+        );
+        assertTrue(automaton.isWordValid(""));
+        assertTrue(automaton.isWordValid("aabb"));
+        assertFalse(automaton.isWordValid("ba"));
+    }
+
+    @Test
+    void testConvertToDFA() {
+        FiniteAutomaton converted = this.nfa.convertToDFA();
+        assertTrue(converted.isDeterministic());
+        assertTrue(converted.compile().isDeterministic());
+        for (String word : new String[]{"", "aa", "bc", "abcaa", "ab", "bcbc", "abcbc"}) {
+            assertEquals(this.nfa.isWordValid(word), converted.isWordValid(word));
+        }
+    }
+
+    @Test
+    void testConvertToDFAWithManyStates() {
+        int n = 40;
+        String[] states = new String[n];
+        Transition[] transitions = new Transition[n - 1];
+        for (int i = 0; i < n; i++) {
+            states[i] = "q" + i;
+        }
+        for (int i = 0; i < n - 1; i++) {
+            transitions[i] = new Transition("q" + i, i % 2 == 0 ? "a" : "e", "q" + (i + 1));
+        }
+        FiniteAutomaton automaton = new FiniteAutomaton(states, new String[]{"a"}, transitions,
+                "q0", new String[]{"q" + (n - 1)});
+
+        FiniteAutomaton converted = automaton.convertToDFA();
+        assertEquals(n / 2 + 1, converted.compile().getStateCount());
+        assertTrue(converted.isWordValid("a".repeat(n / 2)));
+        assertFalse(converted.isWordValid("a".repeat(n / 2 - 1)));
+    }
+
+    @Test
+    void testMinimize() {
+        FiniteAutomaton automaton = new FiniteAutomaton(
+                new String[]{"q0", "q1", "q2", "q3"},
+                new String[]{"a", "b"},
+                new Transition[]{
+                        new Transition("q0", "a", "q1"),
+                        new Transition("q0", "b", "q2"),
+                        new Transition("q1", "a", "q3"),
+                        new Transition("q1", "b", "q3"),
+                        new Transition("q2", "a", "q3"),
+                        new Transition("q2", "b", "q3"),
+                        new Transition("q3", "a", "q3"),
+                        new Transition("q3", "b", "q3"),
+                },
+                "q0",
+                new String[]{"q1", "q2"}
+        );
+
+        FiniteAutomaton minimized = automaton.minimize();
+        assertEquals(2, minimized.compile().getStateCount());
+        assertTrue(minimized.isWordValid("a"));
+        assertTrue(minimized.isWordValid("b"));
+        assertFalse(minimized.isWordValid(""));
+        assertFalse(minimized.isWordValid("ab"));
+    }
+
+    @Test
+    void testLazyDfa() {
+        LazyDfa lazy = this.nfa.toLazyDfa(3);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(lazy.accepts("abcbcaa"));
+            assertFalse(lazy.accepts("abcbcab"));
+        }
+        assertTrue(lazy.getCachedStateCount() <= 3);
+        assertTrue(lazy.getCacheHits() > 0);
+        assertTrue(lazy.getCacheMisses() > 0);
+    }
+
+    @Test
+    void testAreWordsValid() {
+        String[] words = new String[1000];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = i % 3 == 0 ? "abcaa" : (i % 3 == 1 ? "bc" : "abca");
+        }
+        boolean[] expected = new boolean[words.length];
+        for (int i = 0; i < words.length; i++) {
+            expected[i] = this.nfa.isWordValid(words[i]);
+        }
+
+        assertArrayEquals(expected, this.nfa.areWordsValid(words));
+        assertArrayEquals(expected, this.nfa.areWordsValid(Arrays.asList(words)));
+        assertArrayEquals(expected, this.nfa.compile().acceptsAll(new LinkedList<>(Arrays.asList(words))));
+        BitSet streamed = this.nfa.areWordsValid(Arrays.stream(words));
+        for (int i = 0; i < words.length; i++) {
+            assertEquals(expected[i], streamed.get(i));
+        }
+    }
+
+    @Test
+    void testStreamingMatcher() {
+        StreamingMatcher matcher = this.nfa.toStreamingMatcher();
+        assertTrue(matcher.feed(CharBuffer.wrap("ab")));
+        assertFalse(matcher.isAccepting());
+        assertTrue(matcher.feed('c'));
+        assertTrue(matcher.feed('a'));
+        assertTrue(matcher.feed('a'));
+        assertTrue(matcher.isAccepting());
+        assertFalse(matcher.feed('a'));
+        assertTrue(matcher.isDead());
+
+        matcher.reset();
+        assertFalse(matcher.isDead());
+        assertTrue(matcher.feed('b'));
+        assertTrue(matcher.feed('c'));
+        assertTrue(matcher.isAccepting());
+    }
+
+    @Test
+    void testMappedFileScanner() throws IOException {
+        Path file = Files.createTempFile("automaton", ".txt");
+        try {
+            Files.write(file, "aa\nab\r\nbc\n\nxxbcxaa".getBytes(StandardCharsets.ISO_8859_1));
+            MappedFileScanner scanner = new MappedFileScanner(this.nfa.compile());
+
+            List<Long> lines = new ArrayList<>();
+            assertEquals(2, scanner.scanLines(file, (line, start, end) -> lines.add(line)));
+            assertEquals(Arrays.asList(1L, 3L), lines);
+
+            List<Long> starts = new ArrayList<>();
+            assertEquals(4, scanner.scanMatches(file, (line, start, end) -> starts.add(start)));
+            assertEquals(Arrays.asList(0L, 7L, 13L, 16L), starts);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testMappedFileScannerDecodesUtf8() throws IOException {
+        // é is two bytes and U+1F600 four, fed as its two surrogates
+        FiniteAutomaton smiles = new FiniteAutomaton(
+                new String[]{"q0", "q1", "q2", "q3"},
+                new String[]{"\u00E9", "\uD83D", "\uDE00"},
+                new Transition[]{
+                        new Transition("q0", "\u00E9", "q1"),
+                        new Transition("q1", "\uD83D", "q2"),
+                        new Transition("q2", "\uDE00", "q3"),
+                },
+                "q0",
+                new String[]{"q3"}
+        );
+        Path file = Files.createTempFile("automaton", ".txt");
+        try {
+            Files.write(file, "\u00E9\uD83D\uDE00\r\n\u00E9\r\nx\u00E9\uD83D\uDE00".getBytes(StandardCharsets.UTF_8));
+            MappedFileScanner scanner = new MappedFileScanner(smiles.compile());
+
+            List<long[]> lines = new ArrayList<>();
+            assertEquals(1, scanner.scanLines(file, (line, start, end) -> lines.add(new long[]{line, start, end})));
+            assertArrayEquals(new long[]{1, 0, 6}, lines.get(0));
+
+            List<long[]> spans = new ArrayList<>();
+            assertEquals(2, scanner.scanMatches(file, (line, start, end) -> spans.add(new long[]{line, start, end})));
+            assertArrayEquals(new long[]{1, 0, 6}, spans.get(0));
+            assertArrayEquals(new long[]{3, 13, 19}, spans.get(1));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testMappedFileScannerMatchesInOnePass() throws IOException {
+        // a*b|a: every start on the long line keeps a thread alive to its end, hoping for a b
+        FiniteAutomaton automaton = new FiniteAutomaton(
+                new String[]{"q0", "q1", "q2", "q3"},
+                new String[]{"a", "b"},
+                new Transition[]{
+                        new Transition("q0", "a", "q1"),
+                        new Transition("q0", "a", "q2"),
+                        new Transition("q2", "a", "q2"),
+                        new Transition("q2", "b", "q3"),
+                        new Transition("q0", "b", "q3"),
+                },
+                "q0",
+                new String[]{"q1", "q3"}
+        );
+        Path file = Files.createTempFile("automaton", ".txt");
+        try {
+            int n = 200000;
+            Files.write(file, ("a".repeat(n) + "\nxaab").getBytes(StandardCharsets.UTF_8));
+            MappedFileScanner scanner = new MappedFileScanner(automaton.compile());
+            List<long[]> spans = new ArrayList<>();
+            assertEquals(n + 1, scanner.scanMatches(file, (line, start, end) -> {
+                if (line == 2 || start % 50000 == 0) {
+                    spans.add(new long[]{line, start, end});
+                }
+            }));
+            assertArrayEquals(new long[]{1, 0, 1}, spans.get(0));
+            assertArrayEquals(new long[]{1, 150000, 150001}, spans.get(3));
+            assertArrayEquals(new long[]{2, n + 2, n + 5}, spans.get(4));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testWriteAndLoadCompiledAutomaton() throws IOException {
+        Path file = Files.createTempFile("automaton", ".bin");
+        try {
+            FiniteAutomaton minimized = this.nfa.minimize();
+            minimized.compile().writeTo(file);
+            MappedAutomaton mapped = MappedAutomaton.load(file);
+            // The file is renamed into place, and the temporary sibling it was written to is gone
+            String name = file.getFileName().toString();
+            try (Stream<Path> siblings = Files.list(file.getParent())) {
+                assertEquals(0, siblings.filter(sibling -> !sibling.equals(file)
+                        && sibling.getFileName().toString().startsWith(name)).count());
+            }
+
+            assertEquals(minimized.compile().getStateCount(), mapped.getStateCount());
+            for (String word : new String[]{"", "aa", "bc", "abcaa", "ab", "bcbc", "abcbc", "xyz"}) {
+                assertEquals(this.nfa.isWordValid(word), mapped.accepts(word));
+                assertEquals(this.nfa.isWordValid(word), mapped.toCompiledAutomaton().accepts(word));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testLoadRejectsCorruptedAutomaton() throws IOException {
+        Path file = Files.createTempFile("automaton", ".bin");
+        try {
+            this.nfa.minimize().compile().writeTo(file);
+            byte[] valid = Files.readAllBytes(file);
+            // Header ints are state count at 8, initial state at 16 and lookup width at 28; the table starts at
+            // 40, after the single accepting word, with the dead class of state 0
+            int[][] corruptions = {{8, 0}, {8, 1000}, {12, -1}, {16, 1000}, {16, -2}, {20, -1}, {24, 1 << 20},
+                    {28, 3}, {44, 1000}, {44, -7}, {40, 0}};
+            for (int[] corruption : corruptions) {
+                ByteBuffer corrupted = ByteBuffer.wrap(valid.clone()).order(ByteOrder.LITTLE_ENDIAN);
+                corrupted.putInt(corruption[0], corruption[1]);
+                Files.write(file, corrupted.array());
+                assertThrows(IOException.class, () -> MappedAutomaton.load(file));
+            }
+
+            Files.write(file, Arrays.copyOf(valid, valid.length - 1));
+            assertThrows(IOException.class, () -> MappedAutomaton.load(file));
+            Files.write(file, Arrays.copyOf(valid, valid.length + 1));
+            assertThrows(IOException.class, () -> MappedAutomaton.load(file));
+            byte[] badClass = valid.clone();
+            badClass[badClass.length - 1] = 100;
+            Files.write(file, badClass);
+            assertThrows(IOException.class, () -> MappedAutomaton.load(file));
+
+            Files.write(file, valid);
+            assertTrue(MappedAutomaton.load(file).accepts("aa"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testToGeneratedMatcher() {
+        Matcher matcher = this.nfa.toGeneratedMatcher();
+        for (String word : new String[]{"", "aa", "bc", "abcaa", "ab", "bcbc", "abcbc", "xyz"}) {
+            assertEquals(this.nfa.isWordValid(word), matcher.accepts(word));
+        }
+    }
+
+    @Test
+    void testAlphabetEquivalenceClasses() {
+        String[] alphabet = new String[26];
+        Transition[] transitions = new Transition[52];
+        for (int i = 0; i < 26; i++) {
+            alphabet[i] = String.valueOf((char) ('A' + i));
+            String target = i < 25 ? "q1" : "q0";
+            transitions[2 * i] = new Transition("q0", alphabet[i], target);
+            transitions[2 * i + 1] = new Transition("q1", alphabet[i], target);
+        }
+        FiniteAutomaton automaton = new FiniteAutomaton(new String[]{"q0", "q1"}, alphabet, transitions,
+                "q0", new String[]{"q1"});
+
+        assertEquals(26, automaton.compile().getSymbolCount());
+        assertEquals(3, automaton.compile().getClassCount());
+        assertTrue(automaton.isWordValid("HELLO"));
+        assertFalse(automaton.isWordValid("FIZZ"));
+        assertFalse(automaton.isWordValid("hello"));
+        assertTrue(automaton.minimize().isWordValid("WORLD"));
+    }
+
+    @Test
+    void testConvertToDFAParallel() {
+        assertEquals(this.nfa.convertToDFA().toString(), this.nfa.convertToDFAParallel().toString());
+    }
+
+    @Test
+    void testMultiMatcher() {
+        FiniteAutomaton other = new FiniteAutomaton(
+                new String[]{"p0", "p1"},
+                new String[]{"c", "d"},
+                new Transition[]{
+                        new Transition("p0", "c", "p1"),
+                        new Transition("p1", "d", "p0"),
+                },
+                "p0",
+                new String[]{"p0"}
+        );
+        List<FiniteAutomaton> automata = List.of(this.nfa, this.dfa, other);
+        MultiMatcher matcher = new MultiMatcher(automata, 4);
+        for (String word : new String[]{"", "aa", "ab", "abca", "ba", "cd", "cdcd", "bca", "abcab", "x"}) {
+            BitSet matches = matcher.matches(word);
+            for (int i = 0; i < automata.size(); i++) {
+                assertEquals(automata.get(i).isWordValid(word), matches.get(i), word + " against automaton " + i);
+            }
+        }
+        assertTrue(matcher.getCachedStateCount() <= 4);
+    }
+
+    @Test
+    void testIsWordValidAroundSingleWordLimit() {
+        // 64 states fit the single-long engine, 65 fall back to the general bitset simulation
+        for (int count : new int[]{64, 65}) {
+            String[] states = new String[count];
+            List<Transition> transitions = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                states[i] = "q" + i;
+            }
+            for (int i = 0; i + 1 < count; i++) {
+                transitions.add(new Transition(states[i], "a", states[i + 1]));
+                transitions.add(new Transition(states[i], "a", states[0]));
+            }
+            FiniteAutomaton automaton = new FiniteAutomaton(states, new String[]{"a"},
+                    transitions.toArray(new Transition[0]), "q0", new String[]{states[count - 1]});
+            assertFalse(automaton.isDeterministic());
+            assertFalse(automaton.isWordValid("a".repeat(count - 2)));
+            assertTrue(automaton.isWordValid("a".repeat(count - 1)));
+            assertTrue(automaton.isWordValid("a".repeat(count + 5)));
+            assertFalse(automaton.isWordValid("a".repeat(count - 1) + "b"));
+        }
+    }
+
+    @Test
+    void testEquivalentToAndIncludedIn() {
+        assertTrue(this.nfa.equivalentTo(this.nfa.minimize()).holds());
+        assertTrue(this.nfa.minimize().equivalentTo(this.nfa.convertToDFA()).holds());
+
+        LanguageCheck different = this.nfa.equivalentTo(this.dfa);
+        assertFalse(different.holds());
+        String word = different.getCounterexample();
+        assertTrue(this.nfa.isWordValid(word) != this.dfa.isWordValid(word));
+        assertEquals(1, word.length());
+
+        FiniteAutomaton aa = new FiniteAutomaton(
+                new String[]{"p0", "p1", "p2"},
+                new String[]{"a"},
+                new Transition[]{
+                        new Transition("p0", "a", "p1"),
+                        new Transition("p1", "a", "p2"),
+                },
+                "p0",
+                new String[]{"p2"}
+        );
+        assertTrue(aa.includedIn(this.nfa).holds());
+        LanguageCheck notIncluded = this.nfa.includedIn(aa);
+        assertFalse(notIncluded.holds());
+        assertEquals("bc", notIncluded.getCounterexample());
+    }
+
+    @Test
+    void testDictionaryBuilder() throws IOException {
+        Path file = Files.createTempFile("dictionary", ".txt");
+        try {
+            Files.write(file, List.of("tap", "taps", "top", "tops"), StandardCharsets.UTF_8);
+            CompiledAutomaton dictionary = DictionaryBuilder.fromSortedFile(file);
+            assertTrue(dictionary.accepts("tap"));
+            assertTrue(dictionary.accepts("tops"));
+            assertFalse(dictionary.accepts("ta"));
+            assertFalse(dictionary.accepts("tapss"));
+            // t -> {a, o} -> p -> (s) shares every suffix: 5 states instead of the trie's 8
+            assertEquals(5, dictionary.getStateCount());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        DictionaryBuilder builder = new DictionaryBuilder();
+        builder.add("b");
+        assertThrows(IllegalArgumentException.class, () -> builder.add("a"));
+    }
+
+    @Test
+    void testDictionaryBuilderWithLargeAlphabet() {
+        // Every ideograph leads to the same final state from q0 and from "a", so they all share one class
+        List<String> words = new ArrayList<>();
+        for (char c = '\u4E00'; c < '\u4E00' + 5000; c++) {
+            words.add("a" + c);
+        }
+        for (char c = '\u4E00'; c < '\u4E00' + 5000; c++) {
+            words.add(String.valueOf(c));
+        }
+        CompiledAutomaton dictionary = DictionaryBuilder.fromSortedWords(words.stream());
+        assertEquals(5001, dictionary.getSymbolCount());
+        assertEquals(3, dictionary.getClassCount());
+        assertEquals(3, dictionary.getStateCount());
+        assertTrue(dictionary.accepts("\u4E01"));
+        assertTrue(dictionary.accepts("a\u5000"));
+        assertFalse(dictionary.accepts("a"));
+        assertFalse(dictionary.accepts("\u4E01\u4E01"));
+    }
+
+    @Test
+    void testCountAndSampleWords() {
+        // Accepted words of length 2 are aa and bc, and of length 3 only abc
+        BigInteger[] counts = this.nfa.countWordsByLength(3);
+        assertEquals(BigInteger.ZERO, counts[0]);
+        assertEquals(BigInteger.ZERO, counts[1]);
+        assertEquals(BigInteger.valueOf(2), counts[2]);
+        assertEquals(BigInteger.ONE, counts[3]);
+
+        WordSampler sampler = this.nfa.sampler(2);
+        assertEquals(2, sampler.getCount());
+        for (int i = 0; i < 100; i++) {
+            String word = sampler.next();
+            assertTrue(word.equals("aa") || word.equals("bc"));
+        }
+        assertThrows(IllegalStateException.class, () -> this.nfa.sampler(1).next());
+    }
+
+    @Test
+    void testMatcherGeneratorWithWideClass() {
+        // [^x]* over 20000 characters is one class, which must become two range checks and not 19999 cases
+        char x = '\u2000';
+        List<String> symbols = new ArrayList<>();
+        List<Transition> transitions = new ArrayList<>();
+        for (char c = '\u0100'; c < '\u0100' + 20000; c++) {
+            symbols.add(String.valueOf(c));
+            if (c != x) {
+                transitions.add(new Transition("q0", String.valueOf(c), "q0"));
+            }
+        }
+        CompiledAutomaton wide = new FiniteAutomaton(new String[]{"q0"}, symbols.toArray(new String[0]),
+                transitions.toArray(new Transition[0]), "q0", new String[]{"q0"}).compile();
+        Matcher matcher = new MatcherGenerator(wide).compile();
+        assertTrue(matcher.accepts("\u0100\u1FFF\u2001\u4E1F"));
+        assertFalse(matcher.accepts("\u0100" + x));
+        assertFalse(matcher.accepts("a"));
+
+        // Every other character gives no runs to merge, and is rejected up front
+        List<Transition> scattered = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            scattered.add(new Transition("q0", symbols.get(2 * i), "q0"));
+        }
+        CompiledAutomaton sparse = new FiniteAutomaton(new String[]{"q0"}, symbols.toArray(new String[0]),
+                scattered.toArray(new Transition[0]), "q0", new String[]{"q0"}).compile();
+        assertThrows(IllegalArgumentException.class, () -> new MatcherGenerator(sparse));
+    }
+
+    @Test
+    void testOffHeapAutomaton() {
+        OffHeapAutomaton offHeap = OffHeapAutomaton.of(this.nfa.convertToDFA().compile());
+        for (String word : new String[]{"", "aa", "bc", "abc", "abca", "ab", "x"}) {
+            assertEquals(this.nfa.isWordValid(word), offHeap.accepts(word), word);
+        }
+
+        OffHeapAutomaton.Builder builder = new OffHeapAutomaton.Builder(new String[]{"a", "b"});
+        builder.addState(false);
+        builder.addEdge('a', 1);
+        builder.addState(true);
+        builder.addEdge('b', 0);
+        OffHeapAutomaton alternating = builder.build(0);
+        assertTrue(alternating.accepts("aba"));
+        assertFalse(alternating.accepts("ab"));
+        assertEquals(2, alternating.getEdgeCount());
+        assertThrows(IllegalArgumentException.class, () -> builder.addEdge('a', 0));
+        assertThrows(IllegalArgumentException.class, () -> OffHeapAutomaton.of(this.nfa.compile()));
+    }
+
+    @Test
+    void testRemoveEpsilons() {
+        // q0 and q1 form an epsilon cycle and collapse into one state; q2 is only reached through q1
+        FiniteAutomaton withEpsilons = new FiniteAutomaton(
+                new String[]{"q0", "q1", "q2", "q3"},
+                new String[]{"a", "b"},
+                new Transition[]{
+                        new Transition("q0", "e", "q1"),
+                        new Transition("q1", "e", "q0"),
+                        new Transition("q1", "e", "q2"),
+                        new Transition("q0", "a", "q0"),
+                        new Transition("q2", "b", "q3"),
+                },
+                "q0",
+                new String[]{"q3"}
+        );
+        FiniteAutomaton withoutEpsilons = withEpsilons.removeEpsilons();
+        assertEquals(3, withoutEpsilons.compile().getStateCount());
+        assertTrue(withEpsilons.equivalentTo(withoutEpsilons).holds());
+        assertTrue(withoutEpsilons.isWordValid("aab"));
+        assertFalse(withoutEpsilons.isWordValid("ba"));
+        assertEquals(Set.of("q0", "q1", "q2"), withEpsilons.epsilonClosure("q1"));
+    }
+}
@@ -1,13 +1,23 @@
 package tests;
 
 import automaton.FiniteAutomaton;
+import grammar.ChomskyNormalFormConverter;
 import grammar.ChomskyType;
 import grammar.Grammar;
+import grammar.GrammarAnalysis;
+import grammar.IndexedGrammar;
 import grammar.Production;
+import grammar.SymbolTable;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import parser.CykRecognizer;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 public class GrammarTest {
@@ -80,6 +90,61 @@ public class GrammarTest {
         assertNotNull(generatedWord);
     }
 
+    @Test
+    void testGenerateWordWithinBound() {
+        String[] nonTerminalVariables = {"S"};
+        String[] terminalVariables = {"a", "b"};
+        Production[] productions = {
+                new Production("S", "aSb"),
+                new Production("S", "SS"),
+                new Production("S", "ε")
+        };
+        Grammar grammar = new Grammar(nonTerminalVariables, terminalVariables, productions, "S");
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(grammar.generateWord(10).length() <= 10);
+        }
+        assertEquals(100000, grammar.generateWords(100000, 20, 42).filter(word -> word.length() <= 20).count());
+        assertEquals(grammar.generateWords(100, 20, 7).collect(Collectors.toList()),
+                grammar.generateWords(100, 20, 7).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testGenerateWordSkipsUselessAlternatives() {
+        // B -> bB never finishes, so the unbounded walk must always take S -> a
+        String[] nonTerminalVariables = {"S", "B"};
+        String[] terminalVariables = {"a", "b"};
+        Production[] productions = {
+                new Production("S", "a"),
+                new Production("S", "B"),
+                new Production("B", "bB")
+        };
+        Grammar grammar = new Grammar(nonTerminalVariables, terminalVariables, productions, "S");
+        for (int i = 0; i < 100; i++) {
+            assertEquals("a", grammar.generateWord());
+            assertEquals("a", grammar.generateWord(Long.MAX_VALUE));
+        }
+    }
+
+    @Test
+    void testMultiCharacterNonTerminals() {
+        String[] nonTerminalVariables = {"S", "X12", "X1"};
+        String[] terminalVariables = {"a", "b"};
+        Production[] productions = {
+                new Production("S", "aX12"),
+                new Production("X12", "bX1"),
+                new Production("X1", "a")
+        };
+        Grammar grammar = new Grammar(nonTerminalVariables, terminalVariables, productions, "S");
+
+        IndexedGrammar indexed = grammar.toIndexedGrammar();
+        SymbolTable symbols = indexed.getSymbols();
+        int[] rightSide = indexed.getRightSide(indexed.getFirstProduction(symbols.find("S")));
+        assertEquals(2, rightSide.length);
+        assertEquals("X12", symbols.getName(rightSide[1]));
+        assertEquals(ChomskyType.TYPE_3, grammar.classifyGrammar());
+        assertEquals("aba", grammar.generateWord());
+    }
+
     @Test
     void testToFiniteAutomaton() {
         FiniteAutomaton finiteAutomaton = this.grammar.toFiniteAutomaton();
@@ -92,4 +157,155 @@ public class GrammarTest {
         assertNotNull(chomskyType);
     }
 
+    @Test
+    void testConvertAllMatchesSequentialConversion() {
+        List<Grammar> grammars = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Production[] productions = {
+                    new Production("S", "a".repeat(i % 5 + 1) + "B"),
+                    new Production("S", "AbA"),
+                    new Production("A", "B"),
+                    new Production("A", "ε"),
+                    new Production("B", "b".repeat(i % 3 + 1) + "S"),
+                    new Production("B", "a")
+            };
+            grammars.add(new Grammar(new String[]{"S", "A", "B"}, new String[]{"a", "b"}, productions, "S"));
+        }
+
+        List<String> expected = new ArrayList<>();
+        for (Grammar grammar : grammars) {
+            expected.add(ChomskyNormalFormConverter.convert(grammar).toString());
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<Grammar> converted = ChomskyNormalFormConverter.convertAll(grammars, pool);
+            for (int i = 0; i < grammars.size(); i++) {
+                assertEquals(expected.get(i), converted.get(i).toString());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(expected.get(7), ChomskyNormalFormConverter.convert(grammars.get(7)).toString());
+
+        ChomskyNormalFormConverter converter = new ChomskyNormalFormConverter(grammars.get(7));
+        assertEquals(expected.get(7), converter.convert().toString());
+        assertThrows(IllegalStateException.class, converter::convert);
+        assertThrows(IllegalStateException.class, converter::convertBounded);
+    }
+
+    @Test
+    void testGrammarAnalysis() {
+        String[] nonTerminalVariables = {"S", "A", "B", "C", "D", "E"};
+        String[] terminalVariables = {"a", "b"};
+        Production[] productions = {
+                new Production("S", "ABa"),
+                new Production("S", "D"),
+                new Production("A", "BC"),
+                new Production("B", "ε"),
+                new Production("C", "B"),
+                new Production("D", "aD"),
+                new Production("E", "b")
+        };
+        Grammar grammar = new Grammar(nonTerminalVariables, terminalVariables, productions, "S");
+        IndexedGrammar indexed = grammar.toIndexedGrammar();
+        SymbolTable symbols = indexed.getSymbols();
+        GrammarAnalysis analysis = new GrammarAnalysis(indexed);
+
+        // A is only nullable through C -> B
+        assertTrue(analysis.isNullable(symbols.find("A")));
+        assertTrue(analysis.isNullable(symbols.find("C")));
+        assertFalse(analysis.isNullable(symbols.find("S")));
+        assertFalse(analysis.isProductive(symbols.find("D")));
+        assertTrue(analysis.isReachable(symbols.find("D")));
+        assertFalse(analysis.isUseful(symbols.find("D")));
+        assertFalse(analysis.isReachable(symbols.find("E")));
+        assertTrue(analysis.isUseful(symbols.find("A")));
+        assertFalse(analysis.isLanguageEmpty());
+
+        // X -> aXb is not regular, but X never derives a word, so only S -> a is left to classify
+        Grammar regular = new Grammar(new String[]{"S", "X"}, terminalVariables, new Production[]{
+                new Production("S", "a"),
+                new Production("S", "aX"),
+                new Production("X", "aXb")
+        }, "S");
+        assertTrue(regular.isRegularGrammar());
+        assertEquals(ChomskyType.TYPE_3, regular.classifyGrammar());
+
+        // Once X -> ε makes X useful, both reject X -> aXb
+        Grammar contextFree = new Grammar(new String[]{"S", "X"}, terminalVariables, new Production[]{
+                new Production("S", "a"),
+                new Production("S", "aX"),
+                new Production("X", "aXb"),
+                new Production("X", "ε")
+        }, "S");
+        assertFalse(contextFree.isRegularGrammar());
+        assertEquals(ChomskyType.TYPE_2, contextFree.classifyGrammar());
+    }
+
+    @Test
+    void testChomskyNormalFormKeepsTransitivelyNullableWords() {
+        Production[] productions = {
+                new Production("S", "aAb"),
+                new Production("S", "SS"),
+                new Production("A", "BC"),
+                new Production("A", "a"),
+                new Production("B", "ε"),
+                new Production("C", "B")
+        };
+        Grammar grammar = new Grammar(new String[]{"S", "A", "B", "C"}, new String[]{"a", "b"}, productions, "S");
+        CykRecognizer recognizer = new CykRecognizer(ChomskyNormalFormConverter.convert(grammar));
+        assertTrue(recognizer.accepts("ab"));
+        assertTrue(recognizer.accepts("aabab"));
+        assertFalse(recognizer.accepts(""));
+        assertFalse(recognizer.accepts("aaab"));
+    }
+
+    @Test
+    void testConvertBoundedWithManyOptionalSymbols() {
+        // S -> N0 N1 ... N29 with every Ni -> a | ε would expand to 2^30 right-hand sides before binarizing
+        List<String> nonTerminalVariables = new ArrayList<>(List.of("S"));
+        List<Production> productions = new ArrayList<>();
+        StringBuilder rightSide = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            nonTerminalVariables.add("N" + i + "_");
+            rightSide.append("N").append(i).append("_");
+            productions.add(new Production("N" + i + "_", "a"));
+            productions.add(new Production("N" + i + "_", "ε"));
+        }
+        productions.add(new Production("S", rightSide + "b"));
+        Grammar grammar = new Grammar(nonTerminalVariables.toArray(new String[0]), new String[]{"a", "b"},
+                productions.toArray(new Production[0]), "S");
+
+        ChomskyNormalFormConverter converter = new ChomskyNormalFormConverter(grammar);
+        CykRecognizer recognizer = new CykRecognizer(converter.convertBounded());
+        assertTrue(recognizer.accepts("b"));
+        assertTrue(recognizer.accepts("a".repeat(30) + "b"));
+        assertFalse(recognizer.accepts("a".repeat(31) + "b"));
+        assertFalse(recognizer.accepts("ba"));
+
+        Map<ChomskyNormalFormConverter.Phase, Integer> sizes = converter.getPhaseSizes();
+        assertEquals(ChomskyNormalFormConverter.Phase.values().length, sizes.size());
+        // Balanced grouping bounds BIN and DEL by O(n log n); UNIT is not bounded in general but stays small here
+        int inputSize = sizes.get(ChomskyNormalFormConverter.Phase.INPUT);
+        for (int size : sizes.values()) {
+            assertTrue(size <= 4 * inputSize, sizes.toString());
+        }
+        assertThrows(IllegalStateException.class, converter::convertBounded);
+
+        // A thousand copies of one optional symbol share their halves, so the output stays below the input
+        Grammar repeated = new Grammar(new String[]{"S", "A"}, new String[]{"a"}, new Production[]{
+                new Production("S", "A".repeat(1000)),
+                new Production("A", "a"),
+                new Production("A", "ε")
+        }, "S");
+        converter = new ChomskyNormalFormConverter(repeated);
+        recognizer = new CykRecognizer(converter.convertBounded());
+        assertTrue(recognizer.accepts("a".repeat(1000)));
+        assertFalse(recognizer.accepts("a".repeat(1001)));
+        sizes = converter.getPhaseSizes();
+        inputSize = sizes.get(ChomskyNormalFormConverter.Phase.INPUT);
+        for (ChomskyNormalFormConverter.Phase phase : ChomskyNormalFormConverter.Phase.values()) {
+            assertTrue(sizes.get(phase) <= inputSize + 4, sizes.toString());
+        }
+    }
 }
@@ -0,0 +1,105 @@
+package tests;
+
+import grammar.Grammar;
+import grammar.Production;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import parser.CykRecognizer;
+import parser.EarleyParser;
+import parser.ParseForest;
+
+import static org.junit.jupiter.api.Assertions.*;
+public class ParserTest {
+    private Grammar balanced;
+
+    @BeforeEach
+    void setUp() {
+        // Non-empty balanced strings of a and b, already in Chomsky normal form
+        String[] nonTerminalVariables = {"S", "T", "A", "B"};
+        String[] terminalVariables = {"a", "b"};
+        Production[] productions = {
+                new Production("S", "AB"),
+                new Production("S", "AT"),
+                new Production("S", "SS"),
+                new Production("T", "SB"),
+                new Production("A", "a"),
+                new Production("B", "b")
+        };
+        this.balanced = new Grammar(nonTerminalVariables, terminalVariables, productions, "S");
+    }
+
+    @Test
+    void testCykRecognizer() {
+        CykRecognizer recognizer = new CykRecognizer(this.balanced);
+        assertTrue(recognizer.accepts("ab"));
+        assertTrue(recognizer.accepts("aabbab"));
+        assertFalse(recognizer.accepts(""));
+        assertFalse(recognizer.accepts("abba"));
+        assertFalse(recognizer.accepts("abc"));
+        assertTrue(recognizer.accepts("ab".repeat(200) + "a".repeat(100) + "b".repeat(100)));
+    }
+
+    @Test
+    void testCykRecognizerRejectsNonNormalForm() {
+        Grammar grammar = new Grammar(new String[]{"S"}, new String[]{"a", "b"},
+                new Production[]{new Production("S", "aSb")}, "S");
+        assertThrows(IllegalArgumentException.class, () -> new CykRecognizer(grammar));
+    }
+
+    @Test
+    void testEarleyParser() {
+        // Not in normal form: a^n b^n with an empty and a nullable-only alternative
+        Grammar grammar = new Grammar(new String[]{"S", "E"}, new String[]{"a", "b"}, new Production[]{
+                new Production("S", "aSb"),
+                new Production("S", "E"),
+                new Production("E", "ε")
+        }, "S");
+        EarleyParser parser = new EarleyParser(grammar);
+        assertTrue(parser.accepts(""));
+        assertTrue(parser.accepts("aaabbb"));
+        assertFalse(parser.accepts("aab"));
+        assertFalse(parser.accepts("abc"));
+
+        ParseForest forest = parser.parse("aabb");
+        assertEquals("S", forest.getRoot().getLabel());
+        assertEquals(4, forest.getRoot().getEnd());
+        assertFalse(forest.isAmbiguous());
+        assertEquals(BigInteger.ONE, forest.countTrees());
+
+        assertTrue(new EarleyParser(this.balanced).accepts("a".repeat(5000) + "b".repeat(5000)));
+
+        // Both recursions keep one node per symbol span: n leaves and n nested S
+        Grammar leftRecursive = new Grammar(new String[]{"S"}, new String[]{"a"},
+                new Production[]{new Production("S", "Sa"), new Production("S", "a")}, "S");
+        Grammar rightRecursive = new Grammar(new String[]{"S"}, new String[]{"a"},
+                new Production[]{new Production("S", "aS"), new Production("S", "a")}, "S");
+        for (Grammar recursive : new Grammar[]{leftRecursive, rightRecursive}) {
+            ParseForest chain = new EarleyParser(recursive).parse("a".repeat(50000));
+            assertEquals(100000, chain.getNodeCount());
+            assertEquals(BigInteger.ONE, chain.countTrees());
+        }
+    }
+
+    @Test
+    void testEarleyParseForestSharesAmbiguity() {
+        Grammar grammar = new Grammar(new String[]{"S"}, new String[]{"a"},
+                new Production[]{new Production("S", "SS"), new Production("S", "a")}, "S");
+        ParseForest forest = new EarleyParser(grammar).parse("aaaaaa");
+        assertTrue(forest.isAmbiguous());
+        // Catalan number C5 of binary bracketings
+        assertEquals(BigInteger.valueOf(42), forest.countTrees());
+
+        Grammar cyclic = new Grammar(new String[]{"S"}, new String[]{"a"},
+                new Production[]{new Production("S", "S"), new Production("S", "a")}, "S");
+        assertThrows(IllegalStateException.class, () -> new EarleyParser(cyclic).parse("a").countTrees());
+    }
+
+    @Test
+    void testEarleyParserRejectsNonContextFree() {
+        Grammar grammar = new Grammar(new String[]{"S"}, new String[]{"a"},
+                new Production[]{new Production("S", "a"), new Production("aS", "Sa")}, "S");
+        assertThrows(IllegalArgumentException.class, () -> new EarleyParser(grammar));
+    }
+}
@@ -1,6 +1,7 @@
 package tools;
 
 import automaton.FiniteAutomaton;
+import automaton.WordSampler;
 import grammar.ChomskyNormalFormConverter;
 import grammar.Grammar;
 import grammar.Production;
@@ -30,6 +31,16 @@ public class Tools {
         return sb.toString();
     }
 
+    // Uniformly distributed words of one length from the automaton's language, unlike the skewed grammar walk
+    public String[] generateAcceptedStrings(FiniteAutomaton automaton, int length, int count) {
+        WordSampler sampler = automaton.sampler(length);
+        String[] words = new String[count];
+        for (int i = 0; i < count; i++) {
+            words[i] = sampler.next();
+        }
+        return words;
+    }
+
     public void printOutputLab2(FiniteAutomaton FA,Grammar grammar){
         System.out.println("\n1. Classify the grammar based on Chomsky hierarchy: ");
         System.out.println("Current grammar is of: " + grammar.classifyGrammar());
@@ -79,9 +90,7 @@ public class Tools {
         System.out.println(grammar);
         System.out.println("---------------------------");
         System.out.println("CNF grammar");
-        ChomskyNormalFormConverter chomskyNormalFormConverter = new ChomskyNormalFormConverter(grammar);
-//        grammar.convertToChomskyNormalForm();
-        grammar = chomskyNormalFormConverter.getGrammar(grammar);
+        grammar = ChomskyNormalFormConverter.convert(grammar);
         System.out.println(grammar);
     }
 